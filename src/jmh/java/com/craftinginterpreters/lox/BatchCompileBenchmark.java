@@ -0,0 +1,67 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parallel batch compilation of a directory of 1000 generated scripts, ten directories of 100, by a growing
+ * number of threads. Files per second is 1000 times the throughput.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchCompileBenchmark {
+    static final int FILES = 1000;
+
+    @Param({"1", "2", "4"})
+    int threads;
+
+    /**
+     * The size of every script.
+     */
+    @Param({"SMALL", "MEDIUM"})
+    BenchmarkInputs.Size size;
+
+    private Path root;
+    private ExecutorService executor;
+    private BatchCompiler compiler;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("lox-batch");
+        String source = BenchmarkInputs.mixed(size);
+        for (int i = 0; i < FILES; i++) {
+            Path directory = root.resolve("d" + i % 10);
+            Files.createDirectories(directory);
+            Files.write(directory.resolve("script" + i + ".lox"), source.getBytes());
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        compiler = new BatchCompiler(new LoxCompiler(), executor);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int compileTree() throws IOException, InterruptedException {
+        return compiler.compileTree(root).files();
+    }
+}
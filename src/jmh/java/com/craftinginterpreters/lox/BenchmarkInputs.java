@@ -0,0 +1,158 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * Deterministic generated sources shared by the benchmarks.
+ */
+public final class BenchmarkInputs {
+    private static final String[] OPERATORS = {
+            "+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">="
+    };
+
+    private BenchmarkInputs() {
+    }
+
+    /**
+     * The input sizes every stage is measured with.
+     */
+    public enum Size {
+        /**
+         * 16 operands, a typical hand-written expression.
+         */
+        SMALL(4),
+        /**
+         * About a thousand operands.
+         */
+        MEDIUM(10),
+        /**
+         * About 130 thousand operands, a few megabytes of source.
+         */
+        LARGE(17);
+
+        final int depth;
+
+        Size(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * A balanced expression mixing every operator, literal kind, grouping and unary operators,
+     * with a line break after every few operands.
+     */
+    static String mixed(Size size) {
+        StringBuilder builder = new StringBuilder();
+        mixed(builder, size.depth, 0);
+        return builder.toString();
+    }
+
+    private static void mixed(StringBuilder builder, int depth, int index) {
+        if (depth == 0) {
+            switch (index % 8) {
+                case 0:
+                    builder.append(index);
+                    break;
+                case 1:
+                    builder.append(index).append(".25");
+                    break;
+                case 2:
+                    builder.append("\"str").append(index).append('"');
+                    break;
+                case 3:
+                    builder.append("true");
+                    break;
+                case 4:
+                    builder.append("-").append(index);
+                    break;
+                case 5:
+                    builder.append("!false");
+                    break;
+                case 6:
+                    builder.append("(").append(index).append(")");
+                    break;
+                default:
+                    builder.append("\n").append(index);
+                    break;
+            }
+            return;
+        }
+        builder.append('(');
+        mixed(builder, depth - 1, index * 2);
+        builder.append(' ').append(OPERATORS[(depth + index) % OPERATORS.length]).append(' ');
+        mixed(builder, depth - 1, index * 2 + 1);
+        builder.append(')');
+    }
+
+    /**
+     * A program of {@code 2^depth / 8} expression statements of 8 operands each. When malformed, every statement
+     * has a syntax error in the middle, so the parser has to recover once per statement.
+     */
+    static String program(Size size, boolean malformed) {
+        StringBuilder builder = new StringBuilder();
+        int statements = Math.max(1, (1 << size.depth) / 8);
+        for (int i = 0; i < statements; i++) {
+            mixed(builder, 2, i * 2);
+            builder.append(malformed ? " * ) " : " + ");
+            mixed(builder, 2, i * 2 + 1);
+            builder.append(";\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Builds a balanced arithmetic tree of the given depth, alternating the four arithmetic operators.
+     */
+    static String balanced(int depth) {
+        StringBuilder builder = new StringBuilder();
+        balanced(builder, depth, 0);
+        return builder.toString();
+    }
+
+    private static void balanced(StringBuilder builder, int depth, int index) {
+        if (depth == 0) {
+            builder.append(index % 9 + 1);
+            return;
+        }
+        builder.append('(');
+        balanced(builder, depth - 1, index * 2);
+        builder.append(' ').append("+-*/".charAt(depth % 4)).append(' ');
+        balanced(builder, depth - 1, index * 2 + 1);
+        builder.append(')');
+    }
+
+    /**
+     * Builds a left-deep arithmetic chain like {@code 1 - 3 + 4 ...}.
+     */
+    static String chain(int length) {
+        StringBuilder builder = new StringBuilder("1");
+        for (int i = 1; i < length; i++) {
+            builder.append(i % 2 == 0 ? " + " : " - ").append(i % 9 + 1);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Identifier-heavy text: about one word in four is a keyword, the rest are identifiers of varying
+     * length, some of them sharing a prefix with a keyword.
+     */
+    static String identifiers(Size size) {
+        String[] words = {
+                "and", "counter", "class", "classify", "else", "elsewhere", "false", "for", "format", "fun",
+                "if", "index", "nil", "order", "print", "return", "super", "this", "total_value", "true",
+                "var", "variable", "while", "x", "y1", "_tmp", "thread", "trueish", "fork", "nilpotent"
+        };
+        StringBuilder builder = new StringBuilder();
+        int count = 1 << size.depth;
+        for (int i = 0; i < count; i++) {
+            builder.append(words[(i * 7) % words.length]);
+            builder.append(i % 12 == 11 ? '\n' : ' ');
+        }
+        return builder.toString();
+    }
+
+    static Expr parse(String source) {
+        List<Token> tokens = new Scanner(source).scanTokens();
+        return new Parser(tokens).parse();
+    }
+}
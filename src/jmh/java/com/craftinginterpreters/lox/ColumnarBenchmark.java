@@ -0,0 +1,90 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One formula over a table of a million rows: bound row by row and evaluated by the {@link Interpreter},
+ * against the {@link ColumnarEvaluator}. The scores are rows per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnarBenchmark {
+    static final int ROWS = 1 << 20;
+
+    /**
+     * A number formula and a boolean one.
+     */
+    @Param({"arithmetic", "predicate"})
+    String formula;
+
+    Expr expr;
+    ColumnTable table;
+    ColumnarEvaluator evaluator;
+    double[] price;
+    double[] quantity;
+    double[] discount;
+    boolean[] member;
+    private final Interpreter interpreter = new Interpreter();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        price = new double[ROWS];
+        quantity = new double[ROWS];
+        discount = new double[ROWS];
+        member = new boolean[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            price[i] = random.nextInt(10000) / 100.0;
+            quantity[i] = 1 + random.nextInt(20);
+            discount[i] = random.nextInt(30) / 100.0;
+            member[i] = random.nextBoolean();
+        }
+        table = new ColumnTable(ROWS)
+                .add("price", price)
+                .add("quantity", quantity)
+                .add("discount", discount)
+                .add("member", member);
+        String source = formula.equals("arithmetic")
+                ? "price * quantity * (1 - discount) + 2.5"
+                : "price * quantity > 500 == !member";
+        expr = BenchmarkInputs.parse(source);
+        evaluator = new ColumnarEvaluator(expr, table);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object[] rowWise() {
+        Object[] values = new Object[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            interpreter.define("price", price[i]);
+            interpreter.define("quantity", quantity[i]);
+            interpreter.define("discount", discount[i]);
+            interpreter.define("member", member[i]);
+            values[i] = interpreter.evaluate(expr);
+        }
+        return values;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object columnar() {
+        return formula.equals("arithmetic") ? evaluator.evaluateNumbers() : evaluator.evaluateBooleans();
+    }
+
+    /**
+     * Planning included, as when every formula is evaluated once.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object planAndColumnar() {
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(expr, table);
+        return formula.equals("arithmetic") ? evaluator.evaluateNumbers() : evaluator.evaluateBooleans();
+    }
+}
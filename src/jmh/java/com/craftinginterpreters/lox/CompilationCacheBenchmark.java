@@ -0,0 +1,54 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of a script: a cold start scans and parses the source, a warm start hashes the source
+ * and loads the tree from the {@link CompilationCache}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompilationCacheBenchmark {
+    @Param
+    BenchmarkInputs.Size size;
+
+    byte[] bytes;
+    Path directory;
+    CompilationCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        bytes = BenchmarkInputs.mixed(size).getBytes(StandardCharsets.UTF_8);
+        directory = Files.createTempDirectory("jlox-cache");
+        cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        cache.store(bytes, cold());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cache.clear();
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public List<Expr> cold() {
+        String source = new String(bytes, StandardCharsets.UTF_8);
+        return new Parser(new Scanner(source, new SymbolTable())).parseProgram();
+    }
+
+    @Benchmark
+    public List<Expr> warm() {
+        return cache.load(bytes);
+    }
+}
@@ -0,0 +1,83 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recursive parser and visitors against the iterative ones with explicit stacks, on trees nested as deep as
+ * the recursive versions still handle and on a wide, shallow tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeepNestingBenchmark {
+    /**
+     * 2000 nested parentheses around a number, 2000 chained negations, and a balanced arithmetic tree of 1K
+     * leaves.
+     */
+    @Param({"parens2000", "negations2000", "balanced10"})
+    String shape;
+
+    TokenBuffer tokens;
+    Expr expr;
+    private final Interpreter interpreter = new Interpreter();
+    private final AstRPNPrinter printer = new AstRPNPrinter();
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        String source;
+        switch (shape) {
+            case "parens2000":
+                source = "(".repeat(2000) + "1" + ")".repeat(2000);
+                break;
+            case "negations2000":
+                source = "-".repeat(2000) + "1";
+                break;
+            default:
+                source = BenchmarkInputs.balanced(10);
+                break;
+        }
+        tokens = new Scanner(source).scanTokenBuffer();
+        expr = new Parser(tokens).parsePratt();
+    }
+
+    @Benchmark
+    public Expr parseRecursive() {
+        return new Parser(tokens).parsePratt();
+    }
+
+    @Benchmark
+    public Expr parseIterative() {
+        return new Parser(tokens).parseIterative();
+    }
+
+    @Benchmark
+    public Object evaluateRecursive() {
+        return interpreter.evaluate(expr);
+    }
+
+    @Benchmark
+    public Object evaluateIterative() {
+        return interpreter.evaluateIterative(expr);
+    }
+
+    @Benchmark
+    public int printRecursive() throws IOException {
+        buffer.setLength(0);
+        printer.print(expr, buffer);
+        return buffer.length();
+    }
+
+    @Benchmark
+    public int printIterative() throws IOException {
+        buffer.setLength(0);
+        printer.printIterative(expr, buffer);
+        return buffer.length();
+    }
+}
@@ -0,0 +1,138 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pointer-based {@link Expr} tree against the flat {@link ExprArena}: building, counting the nodes and
+ * evaluating, on balanced arithmetic trees. Run with the GC profiler to compare the allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExprArenaBenchmark {
+    /**
+     * Depth of the balanced tree, 2^depth leaves.
+     */
+    @Param({"10", "16"})
+    int depth;
+
+    Expr expr;
+    ExprArena arena;
+    int root;
+    private final Interpreter interpreter = new Interpreter();
+
+    private static final PostOrder.Visitor<Integer> TREE_COUNT = new PostOrder.Visitor<Integer>() {
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr, Integer left, Integer right) {
+            return left + right + 1;
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr, Integer expression) {
+            return expression + 1;
+        }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr, Integer right) {
+            return right + 1;
+        }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) {
+            return 1;
+        }
+    };
+
+    private static final ExprArena.PostOrderVisitor<Integer> ARENA_COUNT = new ExprArena.PostOrderVisitor<Integer>() {
+        @Override
+        public Integer visitBinaryExpr(int id, Integer left, Integer right) {
+            return left + right + 1;
+        }
+
+        @Override
+        public Integer visitGroupingExpr(int id, Integer expression) {
+            return expression + 1;
+        }
+
+        @Override
+        public Integer visitLiteralExpr(int id) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitUnaryExpr(int id, Integer right) {
+            return right + 1;
+        }
+
+        @Override
+        public Integer visitVariableExpr(int id) {
+            return 1;
+        }
+    };
+
+    @Setup
+    public void setup() {
+        expr = new Parser(new Scanner(BenchmarkInputs.balanced(depth)).scanTokenBuffer()).parseIterative();
+        arena = new ExprArena();
+        root = arena.add(expr);
+    }
+
+    @Benchmark
+    public Expr buildTree() {
+        return arena.toExpr(root);
+    }
+
+    @Benchmark
+    public ExprArena buildArena() {
+        ExprArena built = new ExprArena(arena.size());
+        built.add(expr);
+        return built;
+    }
+
+    @Benchmark
+    public int countTree() {
+        return PostOrder.walk(expr, TREE_COUNT);
+    }
+
+    @Benchmark
+    public int countArena() {
+        return arena.walk(root, ARENA_COUNT);
+    }
+
+    /**
+     * Counts the binary nodes in one scan of the kinds, no traversal at all.
+     */
+    @Benchmark
+    public int scanArena() {
+        int count = 0;
+        for (int id = 0; id < arena.size(); id++) {
+            if (arena.kind(id) == ExprArena.BINARY) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public Object evaluateTree() {
+        return interpreter.evaluateIterative(expr);
+    }
+
+    @Benchmark
+    public Object evaluateArena() {
+        return interpreter.evaluate(arena, root);
+    }
+
+    @Benchmark
+    public Object evaluateArenaLinear() {
+        return interpreter.evaluateLinear(arena);
+    }
+}
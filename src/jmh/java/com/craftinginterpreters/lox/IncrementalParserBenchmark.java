@@ -0,0 +1,76 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one edit in the middle of a program: updating an {@link IncrementalParser} against scanning and
+ * parsing the whole edited source. Every invocation either applies the edit or undoes it, so the source stays
+ * the same size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IncrementalParserBenchmark {
+    @Param
+    BenchmarkInputs.Size size;
+
+    /**
+     * {@code digit} changes one digit of a number, {@code newline} inserts a line break between two statements,
+     * which moves the lines of every following statement.
+     */
+    @Param({"digit", "newline"})
+    String edit;
+
+    IncrementalParser parser;
+    String source;
+    int offset;
+    String original;
+    String replacement;
+    boolean applied;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkInputs.program(size, false);
+        parser = new IncrementalParser(source);
+        int middle = source.indexOf('\n', source.length() / 2) + 1;
+        if (edit.equals("digit")) {
+            offset = middle;
+            while (!Character.isDigit(source.charAt(offset))) offset++;
+            original = source.substring(offset, offset + 1);
+            replacement = original.equals("7") ? "8" : "7";
+        } else {
+            offset = middle;
+            original = "";
+            replacement = "\n";
+        }
+        applied = false;
+    }
+
+    @Benchmark
+    public List<Expr> incremental() {
+        if (applied) {
+            parser.edit(offset, replacement.length(), original);
+        } else {
+            parser.edit(offset, original.length(), replacement);
+        }
+        applied = !applied;
+        return parser.statements();
+    }
+
+    @Benchmark
+    public List<Expr> full() {
+        String removed = applied ? replacement : original;
+        String inserted = applied ? original : replacement;
+        source = source.substring(0, offset) + inserted + source.substring(offset + removed.length());
+        applied = !applied;
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = new Scanner(source, new SymbolTable(), diagnostics).scanTokenBuffer();
+        return new Parser(tokens).withReporter(diagnostics).parseProgram();
+    }
+}
@@ -0,0 +1,58 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of deep arithmetic trees: the boxed {@link Interpreter} visitor, the unboxed
+ * {@link NumberEvaluator} path and the bytecode {@link VM}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+    @Param({"balanced10", "balanced16", "chain2000"})
+    String shape;
+
+    Expr expr;
+    Chunk chunk;
+    private final Interpreter interpreter = new Interpreter();
+    private final VM vm = new VM();
+
+    @Setup
+    public void setup() {
+        String source;
+        switch (shape) {
+            case "balanced10":
+                source = BenchmarkInputs.balanced(10);
+                break;
+            case "balanced16":
+                source = BenchmarkInputs.balanced(16);
+                break;
+            default:
+                source = BenchmarkInputs.chain(2000);
+                break;
+        }
+        expr = BenchmarkInputs.parse(source);
+        chunk = new BytecodeCompiler().compile(expr);
+    }
+
+    @Benchmark
+    public Object boxed() {
+        return expr.accept(interpreter);
+    }
+
+    @Benchmark
+    public double unboxed() {
+        return NumberEvaluator.evaluate(expr);
+    }
+
+    @Benchmark
+    public Object vm() {
+        return vm.run(chunk);
+    }
+}
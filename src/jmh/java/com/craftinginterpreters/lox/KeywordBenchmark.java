@@ -0,0 +1,73 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword recognition on identifier-heavy input: {@link Scanner#identifierType} in place against the
+ * former substring plus {@code Map} lookup, and the whole scanner over the same input.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordBenchmark {
+    private static final Map<String, TokenType> KEYWORDS = new HashMap<>();
+
+    static {
+        for (TokenType type : TokenType.values()) {
+            if (type.compareTo(TokenType.AND) >= 0 && type.compareTo(TokenType.WHILE) <= 0) {
+                KEYWORDS.put(type.name().toLowerCase(), type);
+            }
+        }
+    }
+
+    @Param({"MEDIUM", "LARGE"})
+    BenchmarkInputs.Size size;
+
+    String source;
+    int[] starts;
+    int[] ends;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkInputs.identifiers(size);
+        TokenBuffer tokens = new Scanner(source).scanTokenBuffer();
+        int count = tokens.size() - 1;
+        starts = new int[count];
+        ends = new int[count];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            while (!Character.isLetter(source.charAt(offset)) && source.charAt(offset) != '_') offset++;
+            starts[i] = offset;
+            while (offset < source.length() && !Character.isWhitespace(source.charAt(offset))) offset++;
+            ends[i] = offset;
+        }
+    }
+
+    @Benchmark
+    public void inPlace(Blackhole blackhole) {
+        for (int i = 0; i < starts.length; i++) {
+            blackhole.consume(Scanner.identifierType(source, starts[i], ends[i]));
+        }
+    }
+
+    @Benchmark
+    public void substringAndMap(Blackhole blackhole) {
+        for (int i = 0; i < starts.length; i++) {
+            TokenType type = KEYWORDS.get(source.substring(starts[i], ends[i]));
+            blackhole.consume(type == null ? TokenType.IDENTIFIER : type);
+        }
+    }
+
+    @Benchmark
+    public TokenBuffer scanTokenBuffer() {
+        return new Scanner(source).scanTokenBuffer();
+    }
+}
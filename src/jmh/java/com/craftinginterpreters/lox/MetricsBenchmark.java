@@ -0,0 +1,39 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of measuring the pipeline: compiling a program without metrics and with a {@link Metrics} registry.
+ * No flight recording runs, so the {@link PipelineEvents} are disabled in both.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    @Param({"SMALL", "MEDIUM"})
+    BenchmarkInputs.Size size;
+
+    String source;
+    private final LoxCompiler plain = new LoxCompiler();
+    private final LoxCompiler measured = new LoxCompiler(false, new Metrics());
+
+    @Setup
+    public void setup() {
+        source = BenchmarkInputs.program(size, false);
+    }
+
+    @Benchmark
+    public CompileResult disabled() {
+        return plain.compile(source);
+    }
+
+    @Benchmark
+    public CompileResult enabled() {
+        return measured.compile(source);
+    }
+}
@@ -0,0 +1,62 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing stage: already scanned tokens to the {@link Expr} tree, and scanning plus parsing
+ * with and without the whole token list in memory.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    @Param
+    BenchmarkInputs.Size size;
+
+    String source;
+    List<Token> tokens;
+    TokenBuffer buffer;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkInputs.mixed(size);
+        tokens = new Scanner(source).scanTokens();
+        buffer = new Scanner(source).scanTokenBuffer();
+    }
+
+    @Benchmark
+    public Expr parseTokens() {
+        return new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public Expr parsePrattTokens() {
+        return new Parser(tokens).parsePratt();
+    }
+
+    @Benchmark
+    public Expr parsePrattHashConsed() {
+        return new Parser(tokens).withFactory(new HashConsingFactory()).parsePratt();
+    }
+
+    @Benchmark
+    public Expr parseTokenBuffer() {
+        return new Parser(buffer).parse();
+    }
+
+    @Benchmark
+    public Expr scanAndParseTokens() {
+        return new Parser(new Scanner(source).scanTokens()).parse();
+    }
+
+    @Benchmark
+    public Expr scanAndParseStreaming() {
+        return new Parser(new Scanner(source)).parse();
+    }
+}
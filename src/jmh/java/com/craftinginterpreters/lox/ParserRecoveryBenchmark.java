@@ -0,0 +1,42 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a valid program against the same program with a syntax error in every statement. The errors are
+ * collected in a {@link Diagnostics}, so the malformed case includes formatting every message.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserRecoveryBenchmark {
+    @Param
+    BenchmarkInputs.Size size;
+
+    List<Token> valid;
+    List<Token> malformed;
+
+    @Setup
+    public void setup() {
+        valid = new Scanner(BenchmarkInputs.program(size, false)).scanTokens();
+        malformed = new Scanner(BenchmarkInputs.program(size, true)).scanTokens();
+    }
+
+    @Benchmark
+    public List<Expr> valid() {
+        return new Parser(valid).withReporter(new Diagnostics()).parseProgram();
+    }
+
+    @Benchmark
+    public int malformed() {
+        Diagnostics diagnostics = new Diagnostics();
+        new Parser(malformed).withReporter(diagnostics).parseProgram();
+        return diagnostics.messages().size();
+    }
+}
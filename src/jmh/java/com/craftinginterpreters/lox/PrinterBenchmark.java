@@ -0,0 +1,63 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Printing stage: the {@link Expr} tree to text, as a new string or streamed into a reused buffer and into a
+ * {@link Writer} that drops the text.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrinterBenchmark {
+    @Param
+    BenchmarkInputs.Size size;
+
+    Expr expr;
+    private final AstPrinter printer = new AstPrinter();
+    private final AstRPNPrinter rpnPrinter = new AstRPNPrinter();
+    private final StringBuilder buffer = new StringBuilder();
+    private final Writer discard = Writer.nullWriter();
+
+    @Setup
+    public void setup() {
+        expr = BenchmarkInputs.parse(BenchmarkInputs.mixed(size));
+    }
+
+    @Benchmark
+    public String astPrinter() {
+        return printer.print(expr);
+    }
+
+    @Benchmark
+    public String astRPNPrinter() {
+        return rpnPrinter.print(expr);
+    }
+
+    @Benchmark
+    public int astPrinterBuffer() throws IOException {
+        buffer.setLength(0);
+        printer.print(expr, buffer);
+        return buffer.length();
+    }
+
+    @Benchmark
+    public int astRPNPrinterBuffer() throws IOException {
+        buffer.setLength(0);
+        rpnPrinter.print(expr, buffer);
+        return buffer.length();
+    }
+
+    @Benchmark
+    public Writer astPrinterWriter() throws IOException {
+        printer.print(expr, discard);
+        return discard;
+    }
+}
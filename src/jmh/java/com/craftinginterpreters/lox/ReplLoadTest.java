@@ -0,0 +1,159 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of {@link ReplServer}: opens many sessions, and once all of them are connected every session sends
+ * its requests one after the other. Prints the request latency percentiles.
+ * <p>
+ * Starts a server in the same process unless {@code --port} names a running one. Run with
+ * {@code java -cp target/benchmarks.jar com.craftinginterpreters.lox.ReplLoadTest [--sessions N]
+ * [--requests N] [--port P]}. Every session needs a file descriptor on both ends, so raise {@code ulimit -n}
+ * for 10K in-process sessions.
+ */
+public class ReplLoadTest {
+    private static final long CLIENT_STACK_SIZE = 256 * 1024;
+    private static final int TIMEOUT_MILLIS = 120_000;
+
+    public static void main(String[] args) throws Exception {
+        int sessions = 10_000;
+        int requests = 20;
+        int port = -1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sessions":
+                    sessions = Integer.parseInt(args[++i]);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(args[++i]);
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Usage: ReplLoadTest [--sessions N] [--requests N] [--port P]");
+                    System.exit(64);
+            }
+        }
+
+        ReplServer server = null;
+        if (port < 0) {
+            server = new ReplServer(0).start();
+            port = server.port();
+        }
+        try {
+            run(port, sessions, requests);
+        } finally {
+            if (server != null) server.close();
+        }
+    }
+
+    private static void run(int port, int sessions, int requests) throws Exception {
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService clients = ReplServer.newThreadPerTaskExecutor("lox-client", CLIENT_STACK_SIZE);
+        List<Future<long[]>> results = new ArrayList<>(sessions);
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            int id = i;
+            results.add(clients.submit(() -> session(port, id, requests, connected, go, failures)));
+        }
+        connected.await();
+        long connectNanos = System.nanoTime() - connectStart;
+        long start = System.nanoTime();
+        go.countDown();
+
+        long[] latencies = new long[sessions * requests];
+        int count = 0;
+        for (Future<long[]> result : results) {
+            long[] sessionLatencies = result.get();
+            System.arraycopy(sessionLatencies, 0, latencies, count, sessionLatencies.length);
+            count += sessionLatencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.MINUTES);
+
+        latencies = Arrays.copyOf(latencies, count);
+        Arrays.sort(latencies);
+        System.out.printf("sessions %d, requests %d, failed sessions %d%n", sessions, count, failures.get());
+        System.out.printf("connect all %.1f ms, requests %.1f ms, %.0f requests/s%n",
+                connectNanos / 1e6, elapsed / 1e6, count / (elapsed / 1e9));
+        if (count == 0) return;
+        System.out.printf("latency us: p50 %.0f  p90 %.0f  p99 %.0f  p99.9 %.0f  max %.0f%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), latencies[count - 1] / 1e3);
+    }
+
+    /**
+     * One client: connects, waits for every other client, then sends its requests.
+     * @return The latency of every request in nanoseconds, empty if the session failed
+     */
+    private static long[] session(int port, int id, int requests, CountDownLatch connected, CountDownLatch go,
+                                  AtomicInteger failures) throws InterruptedException {
+        long[] latencies = new long[requests];
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+        } catch (IOException error) {
+            failures.incrementAndGet();
+            connected.countDown();
+            return new long[0];
+        }
+        connected.countDown();
+        go.await();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            awaitPrompt(in);
+            for (int i = 0; i < requests; i++) {
+                // Alternate numeric and string expressions, with an error now and then.
+                String source = i % 10 == 9 ? "\"a\" - " + i
+                        : i % 2 == 0 ? "(" + id + " + " + i + ") * 2 - 1 < " + i
+                        : "\"s" + i + "\" + \"x\" == \"s" + i + "x\"";
+                long start = System.nanoTime();
+                out.write(source);
+                out.write('\n');
+                out.flush();
+                awaitPrompt(in);
+                latencies[i] = System.nanoTime() - start;
+            }
+            out.write('\n');
+            out.flush();
+            return latencies;
+        } catch (IOException error) {
+            failures.incrementAndGet();
+            return new long[0];
+        }
+    }
+
+    private static void awaitPrompt(BufferedReader in) throws IOException {
+        for (; ; ) {
+            String line = in.readLine();
+            if (line == null) throw new IOException("Session closed.");
+            if (line.equals(ReplServer.PROMPT)) return;
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e3;
+    }
+}
@@ -0,0 +1,48 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning stage: source text to tokens.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+    @Param
+    BenchmarkInputs.Size size;
+
+    String source;
+    private final ParallelScanner parallelScanner = new ParallelScanner();
+
+    @Setup
+    public void setup() {
+        source = BenchmarkInputs.mixed(size);
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source).scanTokens();
+    }
+
+    @Benchmark
+    public List<Token> scanTokensInterned() {
+        return new Scanner(source, new SymbolTable()).scanTokens();
+    }
+
+    @Benchmark
+    public List<Token> scanTokensParallel() {
+        return parallelScanner.scanTokens(source);
+    }
+
+    @Benchmark
+    public TokenBuffer scanTokenBuffer() {
+        return new Scanner(source).scanTokenBuffer();
+    }
+}
@@ -0,0 +1,82 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning inputs made mostly of runs the scanner skips: the {@code String} {@link Scanner}, and the
+ * {@link Utf8Scanner} with the scalar and the vectorized {@link ByteSkipper}. Only token types are scanned, no
+ * {@code Token} is created. The forked JVM gets the incubator module, without it {@code vector} is scalar too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class SkippingBenchmark {
+    /**
+     * About 1 MB of: statements between line and block comments, long identifiers, deeply indented statements,
+     * and the short tokens of {@link BenchmarkInputs#program} where runs are too short to gain anything.
+     */
+    @Param({"comments", "identifiers", "indented", "program"})
+    String input;
+
+    String source;
+    ByteBuffer bytes;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 1 << 20; i++) {
+            switch (input) {
+                case "comments":
+                    builder.append("// Adds the next term of the series, see the notes at the top of the file.\n")
+                            .append("/* The result is checked by the test suite, keep the two in sync\n")
+                            .append("   whenever the series changes. */\n")
+                            .append(i).append(" + 1;\n");
+                    break;
+                case "identifiers":
+                    builder.append("accumulated_partial_result_").append(i).append(" + next_series_term_value_")
+                            .append(i).append(";\n");
+                    break;
+                case "indented":
+                    builder.append('\n').append(" ".repeat(48)).append(i).append(" * 2;");
+                    break;
+                default:
+                    builder.append(BenchmarkInputs.program(BenchmarkInputs.Size.LARGE, false));
+                    break;
+            }
+        }
+        source = builder.toString();
+        byte[] encoded = source.getBytes(StandardCharsets.UTF_8);
+        bytes = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+    }
+
+    @Benchmark
+    public int string() {
+        Scanner scanner = new Scanner(source, null, new Diagnostics());
+        int tokens = 0;
+        while (scanner.scanNext() != TokenType.EOF) tokens++;
+        return tokens;
+    }
+
+    @Benchmark
+    public int scalar() {
+        return count(new Utf8Scanner(bytes, null, new Diagnostics()).withSkipper(ByteSkipper.SCALAR));
+    }
+
+    @Benchmark
+    public int vector() {
+        return count(new Utf8Scanner(bytes, null, new Diagnostics()).withSkipper(ByteSkipper.best()));
+    }
+
+    private static int count(Utf8Scanner scanner) {
+        int tokens = 0;
+        while (scanner.scanNext() != TokenType.EOF) tokens++;
+        return tokens;
+    }
+}
@@ -0,0 +1,65 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state evaluation by the boxed {@link Interpreter} visitor, which checks operand types on every
+ * node, and by the self-specializing {@link Node} tree after its first execution.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpecializationBenchmark {
+    /**
+     * A 1K-leaf arithmetic tree, a left-deep chain, a comparison of two arithmetic trees and a chain of
+     * string concatenations.
+     */
+    @Param({"balanced10", "chain2000", "compare9", "concat200"})
+    String shape;
+
+    Expr expr;
+    Node.Root nodes;
+    private final Interpreter interpreter = new Interpreter();
+
+    @Setup
+    public void setup() {
+        String source;
+        switch (shape) {
+            case "balanced10":
+                source = BenchmarkInputs.balanced(10);
+                break;
+            case "chain2000":
+                source = BenchmarkInputs.chain(2000);
+                break;
+            case "compare9":
+                source = "(" + BenchmarkInputs.balanced(9) + " < " + BenchmarkInputs.balanced(9) + ")"
+                        + " == !(\"a\" + \"b\" == \"ab\")";
+                break;
+            default:
+                StringBuilder builder = new StringBuilder("\"s\"");
+                for (int i = 1; i < 200; i++) {
+                    builder.append(" + \"s").append(i % 10).append('"');
+                }
+                source = builder.toString();
+                break;
+        }
+        expr = BenchmarkInputs.parse(source);
+        nodes = Node.build(expr);
+        nodes.execute();
+    }
+
+    @Benchmark
+    public Object interpreted() {
+        return expr.accept(interpreter);
+    }
+
+    @Benchmark
+    public Object specialized() {
+        return nodes.execute();
+    }
+}
@@ -0,0 +1,76 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation throughput of every execution tier on the same trees: the {@link Interpreter} (tier 0), the
+ * bytecode {@link VM}, the tree compiled to a JVM class by {@link JvmCompiler} (tier 1) and the
+ * {@link TieredExecutor} once it has promoted the tree, which adds the profile lookup to tier 1.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TieredBenchmark {
+    /**
+     * Arithmetic trees of 1K and 64K leaves, a left-deep chain, and a comparison of two arithmetic trees
+     * combined with string equality, which isn't numeric and runs on boxed values.
+     */
+    @Param({"balanced10", "balanced16", "chain2000", "compare9"})
+    String shape;
+
+    Expr expr;
+    Chunk chunk;
+    CompiledExpr compiled;
+    private final Interpreter interpreter = new Interpreter();
+    private final VM vm = new VM();
+    private final TieredExecutor tiered = new TieredExecutor(1);
+
+    @Setup
+    public void setup() {
+        String source;
+        switch (shape) {
+            case "balanced10":
+                source = BenchmarkInputs.balanced(10);
+                break;
+            case "balanced16":
+                source = BenchmarkInputs.balanced(16);
+                break;
+            case "chain2000":
+                source = BenchmarkInputs.chain(2000);
+                break;
+            default:
+                source = "(" + BenchmarkInputs.balanced(9) + " < " + BenchmarkInputs.balanced(9) + ")"
+                        + " == !(\"a\" + \"b\" == \"ab\")";
+                break;
+        }
+        expr = BenchmarkInputs.parse(source);
+        chunk = new BytecodeCompiler().compile(expr);
+        compiled = new JvmCompiler().compile(expr);
+        tiered.evaluate(expr);
+    }
+
+    @Benchmark
+    public Object interpreted() {
+        return interpreter.evaluate(expr);
+    }
+
+    @Benchmark
+    public Object vm() {
+        return vm.run(chunk);
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return compiled.evaluate();
+    }
+
+    @Benchmark
+    public Object tiered() {
+        return tiered.evaluate(expr);
+    }
+}
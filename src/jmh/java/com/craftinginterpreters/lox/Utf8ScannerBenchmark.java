@@ -0,0 +1,57 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning and parsing a script file: read and decoded into a {@code String} as {@code Lox.runFile} does, against
+ * a {@link Utf8Scanner} over a memory mapping of the file. The statements are parsed one at a time and dropped,
+ * so the difference in allocation is the copies of the source.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Utf8ScannerBenchmark {
+    @Param({"MEDIUM", "LARGE"})
+    BenchmarkInputs.Size size;
+
+    Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("lox-bench", ".lox");
+        Files.write(file, BenchmarkInputs.program(size, false).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public int decodedString() throws IOException {
+        String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        return parse(new Parser(new Scanner(source, null, new Diagnostics())));
+    }
+
+    @Benchmark
+    public int mapped() throws IOException {
+        return parse(new Parser(Utf8Scanner.map(file, null, new Diagnostics())));
+    }
+
+    private static int parse(Parser parser) {
+        int statements = 0;
+        while (!parser.isAtEnd()) {
+            if (parser.statement() != null) statements++;
+        }
+        return statements;
+    }
+}
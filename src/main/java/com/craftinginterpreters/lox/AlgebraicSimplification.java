@@ -0,0 +1,58 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Removes operators that can't change the value of their operand:
+ * <ul>
+ *     <li>{@code !!x} when {@code x} is a boolean</li>
+ *     <li>{@code --x} when {@code x} is a number</li>
+ *     <li>{@code x * 1}, {@code 1 * x}, {@code x / 1} and {@code x - 0} when {@code x} is a number</li>
+ * </ul>
+ * The operand type has to be known statically: {@code !!nil} is {@code false} and {@code "a" * 1}
+ * is a runtime error. {@code x + 0} is not simplified, it turns {@code -0} into {@code 0}.
+ */
+class AlgebraicSimplification extends Pass {
+    @Override
+    String name() {
+        return "algebraic-simplification";
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr simplified = super.visitUnaryExpr(expr);
+        Expr.Unary unary = (Expr.Unary) simplified;
+        Expr operand = unwrap(unary.right);
+        if (operand instanceof Expr.Unary && ((Expr.Unary) operand).operator.type == unary.operator.type) {
+            Expr inner = ((Expr.Unary) operand).right;
+            if (unary.operator.type == TokenType.BANG && isBoolean(inner)) return inner;
+            if (unary.operator.type == TokenType.MINUS && isNumber(inner)) return inner;
+        }
+        return simplified;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr simplified = super.visitBinaryExpr(expr);
+        Expr.Binary binary = (Expr.Binary) simplified;
+        switch (binary.operator.type) {
+            case STAR:
+                if (isConstant(binary.right, 1) && isNumber(binary.left)) return binary.left;
+                if (isConstant(binary.left, 1) && isNumber(binary.right)) return binary.right;
+                break;
+            case SLASH:
+                if (isConstant(binary.right, 1) && isNumber(binary.left)) return binary.left;
+                break;
+            case MINUS:
+                if (isConstant(binary.right, 0) && isNumber(binary.left)) return binary.left;
+                break;
+        }
+        return simplified;
+    }
+
+    private static boolean isConstant(Expr expr, double value) {
+        expr = unwrap(expr);
+        if (!(expr instanceof Expr.Literal)) return false;
+        Object literal = ((Expr.Literal) expr).value;
+        // Double.equals tells 0.0 and -0.0 apart, x - (-0) is not always x.
+        return literal instanceof Double && literal.equals(value);
+    }
+}
@@ -1,48 +1,104 @@
 package com.craftinginterpreters.lox;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
+ * Prints a tree in prefix notation, every node parenthesized: {@code (* (- 123) (group 45.67))}.
+ * <p>
+ * The text is written in one pass into the given {@link Appendable}, nothing is built per node, so large trees
+ * can be streamed to a file or socket. Give it a buffered {@code Writer}, every token is a separate append.
  * @author fan
  * 7/20/22
  */
-public class AstPrinter implements Expr.Visitor<String> {
+public class AstPrinter implements Expr.Visitor<Void> {
+    private Appendable out;
+
     String print(Expr expr) {
-        return expr.accept(this);
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(expr, builder);
+        } catch (IOException error) {
+            throw new AssertionError(error);
+        }
+        return builder.toString();
+    }
 
+    /**
+     * Writes the tree into {@code out}.
+     */
+    void print(Expr expr, Appendable out) throws IOException {
+        this.out = out;
+        try {
+            expr.accept(this);
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        } finally {
+            this.out = null;
+        }
     }
 
     @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
-        return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        open(expr.operator.lexeme);
+        expr.left.accept(this);
+        append(' ');
+        expr.right.accept(this);
+        append(')');
+        return null;
     }
 
-    private String parenthesize(String name, Expr... exprs) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("(").append(name);
-        for (Expr expr :
-                exprs) {
-            builder.append(" ");
-            builder.append(expr.accept(this));
-
-        }
-        builder.append(")");
-        return builder.toString();
+    /**
+     * Writes the opening parenthesis and the name of a node, and the space before its first operand.
+     */
+    private void open(String name) {
+        append('(');
+        append(name);
+        append(' ');
     }
 
     @Override
-    public String visitGroupingExpr(Expr.Grouping expr) {
-        return parenthesize("group", expr.expression);
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        open("group");
+        expr.expression.accept(this);
+        append(')');
+        return null;
     }
 
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        append(expr.value == null ? "null" : expr.value.toString());
+        return null;
+    }
 
     @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
-        if (expr.value == null) return "null";
-        return expr.value.toString();
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        open(expr.operator.lexeme);
+        expr.right.accept(this);
+        append(')');
+        return null;
     }
 
     @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
-        return parenthesize(expr.operator.lexeme, expr.right);
+    public Void visitVariableExpr(Expr.Variable expr) {
+        append(expr.name.lexeme);
+        return null;
+    }
+
+    private void append(char c) {
+        try {
+            out.append(c);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void append(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
     }
 
     public static void main(String[] args) {
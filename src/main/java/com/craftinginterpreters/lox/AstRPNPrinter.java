@@ -1,44 +1,145 @@
 package com.craftinginterpreters.lox;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
+ * Prints a tree in reverse Polish notation: {@code (1 + 2) * (4 - 3)} is {@code 1 2 + 4 3 - *}.
+ * <p>
+ * Groupings print just their expression, the order of the operators already encodes them. Unary minus is
+ * printed as {@code neg}, so it can't be mistaken for a subtraction. Like {@link AstPrinter} the text is written
+ * in one pass into the given {@link Appendable}.
  * @author fan
  * 7/20/22
  */
-public class AstRPNPrinter implements Expr.Visitor<String>{
+public class AstRPNPrinter implements Expr.Visitor<Void>{
+    private Appendable out;
+
     public String print(Expr expr){
-        return expr.accept(this);
-    }
-    public String toRPN(String name,Expr... exprs) {
         StringBuilder builder = new StringBuilder();
-        for (Expr expr :
-                exprs) {
-            builder.append(expr.accept(this)).append(" ");
+        try {
+            print(expr, builder);
+        } catch (IOException error) {
+            throw new AssertionError(error);
         }
-        builder.append(name);
         return builder.toString();
     }
+
+    /**
+     * Writes the tree into {@code out}.
+     */
+    public void print(Expr expr, Appendable out) throws IOException {
+        this.out = out;
+        try {
+            expr.accept(this);
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    /**
+     * Writes the same text as {@link #print(Expr, Appendable)} on the {@link PostOrder} driver instead of
+     * recursion, so trees of any depth can be printed. Reverse Polish notation is just the post-order of the
+     * nodes, separated by spaces.
+     */
+    public void printIterative(Expr expr, Appendable out) throws IOException {
+        this.out = out;
+        try {
+            PostOrder.walk(expr, new PostOrder.Visitor<Void>() {
+                private boolean first = true;
+
+                private Void token(String text) {
+                    if (!first) append(' ');
+                    first = false;
+                    append(text);
+                    return null;
+                }
+
+                @Override
+                public Void visitBinaryExpr(Expr.Binary expr, Void left, Void right) {
+                    return token(expr.operator.lexeme);
+                }
+
+                @Override
+                public Void visitGroupingExpr(Expr.Grouping expr, Void expression) {
+                    return null;
+                }
+
+                @Override
+                public Void visitLiteralExpr(Expr.Literal expr) {
+                    return token(expr.value == null ? "nil" : expr.value.toString());
+                }
+
+                @Override
+                public Void visitUnaryExpr(Expr.Unary expr, Void right) {
+                    return token(expr.operator.type == TokenType.MINUS ? "neg" : expr.operator.lexeme);
+                }
+
+                @Override
+                public Void visitVariableExpr(Expr.Variable expr) {
+                    return token(expr.name.lexeme);
+                }
+            });
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        } finally {
+            this.out = null;
+        }
+    }
+
     @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        expr.left.accept(this);
+        append(' ');
+        expr.right.accept(this);
+        append(' ');
+        append(expr.operator.lexeme);
+        return null;
+    }
 
-        return toRPN(expr.operator.lexeme,expr.left, expr.right);
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
     }
 
     @Override
-    public String visitGroupingExpr(Expr.Grouping expr) {
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        append(expr.value == null ? "nil" : expr.value.toString());
         return null;
     }
 
     @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
-        if (expr==null) return  "nil";
-        return expr.value.toString();
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr.right.accept(this);
+        append(' ');
+        append(expr.operator.type == TokenType.MINUS ? "neg" : expr.operator.lexeme);
+        return null;
     }
 
     @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
+    public Void visitVariableExpr(Expr.Variable expr) {
+        append(expr.name.lexeme);
         return null;
     }
 
+    private void append(char c) {
+        try {
+            out.append(c);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void append(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
     public static void main(String[] args) {
         Expr expression =
                 new Expr.Binary(
@@ -0,0 +1,278 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the statements of a program, used by {@link CompilationCache}.
+ * <p>
+ * A header (magic and format version) is followed by the statement count and the nodes of every statement
+ * in pre-order. Every node starts with a
+ * one-byte tag. Operators are stored as type ordinal and line, the lexeme is only stored for token
+ * types that don't have a fixed one. Literals are stored as a value tag and the value, variables as their
+ * name token. Lines and string
+ * lengths are unsigned varints, strings are UTF-8.
+ * <p>
+ * Both directions keep the pending nodes on an explicit stack, so trees of any depth the parser accepts can be
+ * cached.
+ */
+final class AstSerializer {
+    static final int MAGIC = 0x4C4F5841; // "LOXA"
+    /**
+     * Bump whenever the encoding or the node classes change, so stale cache entries are rejected.
+     */
+    static final byte VERSION = 3;
+
+    private static final byte BINARY = 0;
+    private static final byte GROUPING = 1;
+    private static final byte LITERAL = 2;
+    private static final byte UNARY = 3;
+    private static final byte VARIABLE = 4;
+
+    private static final byte NIL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte NUMBER = 3;
+    private static final byte STRING = 4;
+
+    private static final TokenType[] TYPES = TokenType.values();
+    /**
+     * The lexeme of every operator token type, {@code null} for types whose lexeme varies.
+     */
+    private static final String[] LEXEMES = new String[TYPES.length];
+
+    static {
+        String[][] fixed = {
+                {"MINUS", "-"}, {"PLUS", "+"}, {"SLASH", "/"}, {"STAR", "*"},
+                {"BANG", "!"}, {"BANG_EQUAL", "!="}, {"EQUAL_EQUAL", "=="},
+                {"GREATER", ">"}, {"GREATER_EQUAL", ">="}, {"LESS", "<"}, {"LESS_EQUAL", "<="},
+        };
+        for (String[] entry : fixed) {
+            LEXEMES[TokenType.valueOf(entry[0]).ordinal()] = entry[1];
+        }
+    }
+
+    private AstSerializer() {
+    }
+
+    static byte[] serialize(List<Expr> statements) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeVarint(statements.size(), out);
+            for (Expr statement : statements) {
+                writeNode(statement, out);
+            }
+        } catch (IOException error) {
+            // A ByteArrayOutputStream doesn't throw.
+            throw new IllegalStateException(error);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException When the data is truncated, corrupt or written by another format version
+     */
+    static List<Expr> deserialize(byte[] data) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a serialized expression.");
+            byte version = in.get();
+            if (version != VERSION) throw new IOException("Unsupported format version " + version + ".");
+            int count = readVarint(in);
+            // Every statement takes at least two bytes. A corrupt varint can be negative.
+            if (count < 0 || count > in.remaining() / 2) throw new IOException("Bad statement count " + count + ".");
+            List<Expr> statements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                statements.add(readNode(in));
+            }
+            if (in.hasRemaining()) throw new IOException("Trailing data after the statements.");
+            return statements;
+        } catch (BufferUnderflowException error) {
+            throw new IOException("Truncated expression.", error);
+        }
+    }
+
+    /**
+     * Writes the nodes in pre-order, the nodes still to write are on a stack, next one on top.
+     */
+    private static void writeNode(Expr root, DataOutputStream out) throws IOException {
+        Deque<Expr> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expr expr = pending.pop();
+            if (expr instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) expr;
+                out.writeByte(BINARY);
+                writeToken(binary.operator, out);
+                pending.push(binary.right);
+                pending.push(binary.left);
+            } else if (expr instanceof Expr.Grouping) {
+                out.writeByte(GROUPING);
+                pending.push(((Expr.Grouping) expr).expression);
+            } else if (expr instanceof Expr.Literal) {
+                out.writeByte(LITERAL);
+                writeValue(((Expr.Literal) expr).value, out);
+            } else if (expr instanceof Expr.Unary) {
+                Expr.Unary unary = (Expr.Unary) expr;
+                out.writeByte(UNARY);
+                writeToken(unary.operator, out);
+                pending.push(unary.right);
+            } else if (expr instanceof Expr.Variable) {
+                out.writeByte(VARIABLE);
+                writeToken(((Expr.Variable) expr).name, out);
+            } else {
+                throw new IllegalArgumentException("Unknown node " + expr.getClass().getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Reads one tree in pre-order. The nodes waiting for their operands are kept in parallel arrays, innermost
+     * last: their tag, their operator and, for a binary node whose right operand is being read, its left one.
+     */
+    private static Expr readNode(ByteBuffer in) throws IOException {
+        byte[] tags = new byte[16];
+        Token[] operators = new Token[16];
+        Expr[] lefts = new Expr[16];
+        int open = 0;
+        for (; ; ) {
+            byte tag = in.get();
+            Expr node;
+            switch (tag) {
+                case BINARY:
+                case GROUPING:
+                case UNARY:
+                    if (open == tags.length) {
+                        tags = Arrays.copyOf(tags, open * 2);
+                        operators = Arrays.copyOf(operators, open * 2);
+                        lefts = Arrays.copyOf(lefts, open * 2);
+                    }
+                    tags[open] = tag;
+                    operators[open] = tag == GROUPING ? null : readToken(in);
+                    lefts[open] = null;
+                    open++;
+                    continue;
+                case LITERAL:
+                    node = new Expr.Literal(readValue(in));
+                    break;
+                case VARIABLE:
+                    node = new Expr.Variable(readToken(in));
+                    break;
+                default:
+                    throw new IOException("Unknown node tag " + tag + ".");
+            }
+            // Complete every node the operand finishes, until a binary node needs its right operand.
+            for (; ; ) {
+                if (open == 0) return node;
+                int top = open - 1;
+                if (tags[top] == BINARY) {
+                    if (lefts[top] == null) {
+                        lefts[top] = node;
+                        break;
+                    }
+                    node = new Expr.Binary(lefts[top], operators[top], node);
+                } else if (tags[top] == UNARY) {
+                    node = new Expr.Unary(operators[top], node);
+                } else {
+                    node = new Expr.Grouping(node);
+                }
+                open--;
+            }
+        }
+    }
+
+    private static void writeToken(Token token, DataOutputStream out) throws IOException {
+        out.writeByte(token.type.ordinal());
+        writeVarint(token.line, out);
+        if (LEXEMES[token.type.ordinal()] == null) {
+            writeString(token.lexeme, out);
+        }
+    }
+
+    private static Token readToken(ByteBuffer in) throws IOException {
+        int type = in.get() & 0xff;
+        if (type >= TYPES.length) throw new IOException("Unknown token type " + type + ".");
+        int line = readVarint(in);
+        String lexeme = LEXEMES[type] != null ? LEXEMES[type] : readString(in);
+        return new Token(TYPES[type], lexeme, null, line);
+    }
+
+    private static void writeValue(Object value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(NIL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(NUMBER);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        } else {
+            throw new IllegalArgumentException("Can't serialize literal " + value.getClass().getSimpleName());
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case NIL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case NUMBER:
+                return in.getDouble();
+            case STRING:
+                return readString(in);
+            default:
+                throw new IOException("Unknown value tag " + tag + ".");
+        }
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readVarint(in);
+        if (length < 0) throw new IOException("Bad string length " + length + ".");
+        if (length > in.remaining()) throw new IOException("Truncated string.");
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeVarint(int value, DataOutputStream out) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint.");
+    }
+}
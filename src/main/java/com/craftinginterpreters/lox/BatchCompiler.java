@@ -0,0 +1,151 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles every {@code .lox} file of a directory tree in parallel, one task per file on the given executor.
+ * <p>
+ * Only the errors are kept, not the trees, so directories of any size fit in memory. A file the compiler fails on,
+ * too deep to parse for instance, is reported as an error of that file and the batch goes on.
+ */
+final class BatchCompiler {
+    private final LoxCompiler compiler;
+    private final ExecutorService executor;
+
+    BatchCompiler(LoxCompiler compiler, ExecutorService executor) {
+        this.compiler = compiler;
+        this.executor = executor;
+    }
+
+    /**
+     * The {@code .lox} files under the directory, in path order.
+     */
+    static List<Path> sources(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> path.toString().endsWith(".lox") && Files.isRegularFile(path))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    Summary compileTree(Path root) throws IOException, InterruptedException {
+        List<Path> files = sources(root);
+        long start = System.nanoTime();
+        List<Future<FileResult>> tasks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            tasks.add(executor.submit(() -> compileFile(file)));
+        }
+        Summary summary = new Summary();
+        boolean completed = false;
+        try {
+            for (Future<FileResult> task : tasks) {
+                FileResult result;
+                try {
+                    result = task.get();
+                } catch (ExecutionException error) {
+                    Throwable cause = error.getCause();
+                    if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+                    throw new IllegalStateException(cause);
+                }
+                summary.add(result);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                // Aborted: don't leave the rest of the files compiling for nobody.
+                for (Future<FileResult> task : tasks) {
+                    task.cancel(true);
+                }
+            }
+        }
+        summary.nanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private FileResult compileFile(Path file) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        List<String> messages;
+        try {
+            messages = compiler.compile(new String(bytes, Charset.defaultCharset())).messages();
+        } catch (StackOverflowError error) {
+            messages = List.of("Expression too deep.");
+        } catch (RuntimeException error) {
+            messages = List.of("Compilation failed: " + error);
+        }
+        return new FileResult(file, bytes.length, messages);
+    }
+
+    private static class FileResult {
+        final Path file;
+        final long bytes;
+        final List<String> messages;
+
+        FileResult(Path file, long bytes, List<String> messages) {
+            this.file = file;
+            this.bytes = bytes;
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * Totals of a batch and the errors of the files that didn't compile.
+     */
+    static final class Summary {
+        private int files = 0;
+        private long bytes = 0;
+        private long nanos = 0;
+        private final List<String> errors = new ArrayList<>();
+        private int failedFiles = 0;
+
+        private void add(FileResult result) {
+            files++;
+            bytes += result.bytes;
+            if (!result.messages.isEmpty()) {
+                failedFiles++;
+                for (String message : result.messages) {
+                    errors.add(result.file + ": " + message);
+                }
+            }
+        }
+
+        int files() {
+            return files;
+        }
+
+        int failedFiles() {
+            return failedFiles;
+        }
+
+        /**
+         * Every error, prefixed with its file, in file order.
+         */
+        List<String> errors() {
+            return errors;
+        }
+
+        double filesPerSecond() {
+            return files / (nanos / 1e9);
+        }
+
+        String report() {
+            return String.format("%d files (%d with errors), %.1f MB in %.1f ms: %.0f files/s, %.1f MB/s%n",
+                    files, failedFiles, bytes / 1e6, nanos / 1e6, filesPerSecond(), bytes / 1e6 / (nanos / 1e9));
+        }
+    }
+}
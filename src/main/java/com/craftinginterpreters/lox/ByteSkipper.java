@@ -0,0 +1,106 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the end of runs of bytes that {@link Utf8Scanner} skips without producing anything per byte: whitespace,
+ * comments, the rest of identifiers and string literals. Every method looks at {@code bytes[from, to)} by
+ * absolute index and returns the index of the first byte that ends the run, or {@code to}.
+ * <p>
+ * {@link #best()} classifies a whole vector of bytes per step with the Vector API when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, otherwise it is the scalar {@link #SCALAR}.
+ */
+interface ByteSkipper {
+    ByteSkipper SCALAR = new Scalar();
+
+    /**
+     * Skips {@code ' '}, {@code '\t'}, {@code '\r'} and {@code '\n'}.
+     */
+    int skipWhitespace(ByteBuffer bytes, int from, int to);
+
+    /**
+     * Skips {@code [A-Za-z0-9_]}.
+     */
+    int skipIdentifier(ByteBuffer bytes, int from, int to);
+
+    /**
+     * @return The index of the first {@code target} byte, or {@code to}
+     */
+    int indexOf(ByteBuffer bytes, int from, int to, byte target);
+
+    /**
+     * @return The number of {@code target} bytes
+     */
+    int count(ByteBuffer bytes, int from, int to, byte target);
+
+    /**
+     * The vectorized skipper if the Vector API is available, otherwise {@link #SCALAR}.
+     */
+    static ByteSkipper best() {
+        return Holder.BEST;
+    }
+
+    final class Holder {
+        private static final ByteSkipper BEST = load();
+
+        private Holder() {
+        }
+
+        /**
+         * {@link VectorSkipper} fails to link without the incubator module, so it's only loaded when the module
+         * is in the boot layer.
+         */
+        private static ByteSkipper load() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return SCALAR;
+            try {
+                return (ByteSkipper) Class.forName("com.craftinginterpreters.lox.VectorSkipper")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError error) {
+                return SCALAR;
+            }
+        }
+    }
+
+    /**
+     * One byte per step.
+     */
+    final class Scalar implements ByteSkipper {
+        @Override
+        public int skipWhitespace(ByteBuffer bytes, int from, int to) {
+            int i = from;
+            while (i < to && isWhitespace(bytes.get(i))) i++;
+            return i;
+        }
+
+        @Override
+        public int skipIdentifier(ByteBuffer bytes, int from, int to) {
+            int i = from;
+            while (i < to && isIdentifier(bytes.get(i))) i++;
+            return i;
+        }
+
+        @Override
+        public int indexOf(ByteBuffer bytes, int from, int to, byte target) {
+            int i = from;
+            while (i < to && bytes.get(i) != target) i++;
+            return i;
+        }
+
+        @Override
+        public int count(ByteBuffer bytes, int from, int to, byte target) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (bytes.get(i) == target) count++;
+            }
+            return count;
+        }
+
+        static boolean isWhitespace(byte c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+
+        static boolean isIdentifier(byte c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+    }
+}
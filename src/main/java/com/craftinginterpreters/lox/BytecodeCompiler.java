@@ -0,0 +1,127 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lowers an {@link Expr} tree into a {@link Chunk} for the {@link VM}.
+ * <p>
+ * Operands are emitted in the same order {@link Interpreter} evaluates them,
+ * so both backends fail on the same operator with the same message.
+ */
+class BytecodeCompiler implements Expr.Visitor<Void> {
+    private Chunk chunk;
+    /**
+     * Equal literals share one slot in the constant pool.
+     */
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+    private int depth;
+
+    /**
+     * @throws RuntimeError When the tree has a variable, see {@link Operators#unsupportedVariable(Token)}
+     */
+    Chunk compile(Expr expr) {
+        chunk = new Chunk();
+        constantIndexes.clear();
+        depth = 0;
+        expr.accept(this);
+        chunk.write(OpCode.RETURN, null);
+        chunk.trim();
+        return chunk;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        expr.left.accept(this);
+        expr.right.accept(this);
+        switch (expr.operator.type) {
+            case BANG_EQUAL:
+                emit(OpCode.NOT_EQUAL, expr.operator);
+                break;
+            case EQUAL_EQUAL:
+                emit(OpCode.EQUAL, expr.operator);
+                break;
+            case GREATER:
+                emit(OpCode.GREATER, expr.operator);
+                break;
+            case GREATER_EQUAL:
+                emit(OpCode.GREATER_EQUAL, expr.operator);
+                break;
+            case LESS:
+                emit(OpCode.LESS, expr.operator);
+                break;
+            case LESS_EQUAL:
+                emit(OpCode.LESS_EQUAL, expr.operator);
+                break;
+            case PLUS:
+                emit(OpCode.ADD, expr.operator);
+                break;
+            case MINUS:
+                emit(OpCode.SUBTRACT, expr.operator);
+                break;
+            case STAR:
+                emit(OpCode.MULTIPLY, expr.operator);
+                break;
+            case SLASH:
+                emit(OpCode.DIVIDE, expr.operator);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown binary operator " + expr.operator.type);
+        }
+        // Two operands popped, one result pushed.
+        depth--;
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL, null);
+        } else if (Boolean.TRUE.equals(expr.value)) {
+            emit(OpCode.TRUE, null);
+        } else if (Boolean.FALSE.equals(expr.value)) {
+            emit(OpCode.FALSE, null);
+        } else {
+            int index = constantIndexes.computeIfAbsent(expr.value, chunk::addConstant);
+            if (index > 0xffff) {
+                throw new IllegalStateException("Too many constants in one expression.");
+            }
+            emit(OpCode.CONSTANT, null);
+            chunk.write((byte) (index >> 8), null);
+            chunk.write((byte) index, null);
+        }
+        depth++;
+        chunk.maxStack = Math.max(chunk.maxStack, depth);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr.right.accept(this);
+        switch (expr.operator.type) {
+            case BANG:
+                emit(OpCode.NOT, expr.operator);
+                break;
+            case MINUS:
+                emit(OpCode.NEGATE, expr.operator);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown unary operator " + expr.operator.type);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        throw Operators.unsupportedVariable(expr.name);
+    }
+
+    private void emit(byte op, Token token) {
+        chunk.write(op, token);
+    }
+}
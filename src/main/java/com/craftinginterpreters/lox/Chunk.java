@@ -0,0 +1,73 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * A compiled expression: the bytecode, its constant pool and the stack depth it needs.
+ */
+final class Chunk {
+    /**
+     * The instructions, only the first {@link #count} bytes are used.
+     */
+    byte[] code = new byte[16];
+    int count = 0;
+    /**
+     * The operator token of the instruction at the same offset, used for reporting runtime errors.
+     */
+    Token[] tokens = new Token[16];
+    Object[] constants = new Object[8];
+    int constantCount = 0;
+    /**
+     * The most values the operand stack holds while running this chunk.
+     */
+    int maxStack = 0;
+
+    void write(byte op, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+        code[count] = op;
+        tokens[count] = token;
+        count++;
+    }
+
+    /**
+     * Appends the value to the constant pool.
+     *
+     * @return The index in the constant pool
+     */
+    int addConstant(Object value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+
+    /**
+     * Drops the spare capacity, done once compiling is finished.
+     */
+    void trim() {
+        code = Arrays.copyOf(code, count);
+        tokens = Arrays.copyOf(tokens, count);
+        constants = Arrays.copyOf(constants, constantCount);
+    }
+
+    String disassemble() {
+        StringBuilder builder = new StringBuilder();
+        for (int offset = 0; offset < count; ) {
+            byte op = code[offset];
+            builder.append(String.format("%04d %s", offset, OpCode.name(op)));
+            offset++;
+            if (op == OpCode.CONSTANT) {
+                int index = ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+                builder.append(' ').append(index).append(" '")
+                        .append(Interpreter.stringify(constants[index])).append('\'');
+                offset += 2;
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,459 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of JVM class files, just enough for the classes generated by {@link JvmCompiler}.
+ * <p>
+ * Methods are straight-line code without branches or exception handlers, so they need no
+ * {@code StackMapTable} attribute. The constant pool is deduplicated, the operand stack depth of
+ * every method is tracked while its code is written.
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    /**
+     * Java 17.
+     */
+    private static final int MAJOR_VERSION = 61;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    /**
+     * Index of the next constant pool entry, entry 0 is unused.
+     */
+    private int poolSize = 1;
+
+    private final int codeAttribute;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<Member> fields = new ArrayList<>();
+    private final List<Member> methods = new ArrayList<>();
+
+    /**
+     * @param name Internal name of the class, like {@code com/craftinginterpreters/lox/Compiled}
+     */
+    ClassFileWriter(String name, String superName, String... interfaceNames) {
+        codeAttribute = utf8("Code");
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    void field(int access, String name, String descriptor) {
+        fields.add(new Member(access, utf8(name), utf8(descriptor), null));
+    }
+
+    /**
+     * Starts a method, its code is complete once {@link Code#end(int)} is called.
+     */
+    Code method(int access, String name, String descriptor) {
+        Code code = new Code();
+        methods.add(new Member(access, utf8(name), utf8(descriptor), code));
+        return code;
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolSize);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(fields.size());
+            for (Member field : fields) {
+                field.write(out, 0);
+            }
+            out.writeShort(methods.size());
+            for (Member method : methods) {
+                method.write(out, codeAttribute);
+            }
+            // No class attributes.
+            out.writeShort(0);
+        } catch (IOException error) {
+            // A ByteArrayOutputStream doesn't throw.
+            throw new IllegalStateException(error);
+        }
+        return bytes.toByteArray();
+    }
+
+    int utf8(String value) {
+        Integer index = poolIndex.get("U" + value);
+        if (index != null) return index;
+        try {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        } catch (IOException error) {
+            throw new IllegalStateException("Constant too long for a class file.", error);
+        }
+        return add("U" + value, 1);
+    }
+
+    int integer(int value) {
+        Integer index = poolIndex.get("I" + value);
+        if (index != null) return index;
+        write(CONSTANT_INTEGER);
+        writeInt(value);
+        return add("I" + value, 1);
+    }
+
+    int doubleConstant(double value) {
+        // Keyed by the bits, so -0.0 and 0.0 stay different constants.
+        long bits = Double.doubleToRawLongBits(value);
+        Integer index = poolIndex.get("D" + bits);
+        if (index != null) return index;
+        write(CONSTANT_DOUBLE);
+        writeInt((int) (bits >>> 32));
+        writeInt((int) bits);
+        // Doubles take two entries.
+        return add("D" + bits, 2);
+    }
+
+    int classRef(String name) {
+        Integer index = poolIndex.get("C" + name);
+        if (index != null) return index;
+        int nameIndex = utf8(name);
+        write(CONSTANT_CLASS);
+        writeShort(nameIndex);
+        return add("C" + name, 1);
+    }
+
+    int string(String value) {
+        Integer index = poolIndex.get("S" + value);
+        if (index != null) return index;
+        int valueIndex = utf8(value);
+        write(CONSTANT_STRING);
+        writeShort(valueIndex);
+        return add("S" + value, 1);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + '.' + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        write(tag);
+        writeShort(ownerIndex);
+        writeShort(nameAndType);
+        return add(key, 1);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "N" + name + ' ' + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        write(CONSTANT_NAME_AND_TYPE);
+        writeShort(nameIndex);
+        writeShort(descriptorIndex);
+        return add(key, 1);
+    }
+
+    private int add(String key, int slots) {
+        int index = poolSize;
+        poolSize += slots;
+        if (poolSize > 0xffff) {
+            throw new IllegalStateException("Too many constants for a class file.");
+        }
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    private void write(int b) {
+        try {
+            pool.writeByte(b);
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private void writeShort(int s) {
+        try {
+            pool.writeShort(s);
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private void writeInt(int i) {
+        try {
+            pool.writeInt(i);
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    /**
+     * Number of stack slots taken by the arguments of a method descriptor.
+     */
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'D' || c == 'J') {
+                slots += 2;
+                i++;
+            } else {
+                while (descriptor.charAt(i) == '[') i++;
+                if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+                slots++;
+                i++;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Number of stack slots taken by a value of the type, or by the return type of a method descriptor.
+     */
+    private static int slots(String descriptor) {
+        char c = descriptor.charAt(descriptor.lastIndexOf(')') + 1);
+        if (c == 'V') return 0;
+        return c == 'D' || c == 'J' ? 2 : 1;
+    }
+
+    /**
+     * The bytecode of one method.
+     */
+    final class Code {
+        static final int ACONST_NULL = 0x01;
+        static final int ICONST_0 = 0x03;
+        static final int DCONST_0 = 0x0e;
+        static final int DCONST_1 = 0x0f;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC = 0x12;
+        static final int LDC_W = 0x13;
+        static final int LDC2_W = 0x14;
+        static final int ALOAD_0 = 0x2a;
+        static final int AALOAD = 0x32;
+        static final int DADD = 0x63;
+        static final int DSUB = 0x67;
+        static final int DMUL = 0x6b;
+        static final int DDIV = 0x6f;
+        static final int DNEG = 0x77;
+        static final int DRETURN = 0xaf;
+        static final int ARETURN = 0xb0;
+        static final int RETURN = 0xb1;
+        static final int GETSTATIC = 0xb2;
+        static final int PUTSTATIC = 0xb3;
+        static final int INVOKESPECIAL = 0xb7;
+        static final int INVOKESTATIC = 0xb8;
+        static final int CHECKCAST = 0xc0;
+
+        private byte[] code = new byte[64];
+        private int length = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals = -1;
+
+        /**
+         * An instruction without operands.
+         * @param stackChange How many slots it pushes, negative when it pops
+         */
+        Code op(int opcode, int stackChange) {
+            u1(opcode);
+            return adjust(stackChange);
+        }
+
+        Code pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                ldc(integer(value));
+                return this;
+            }
+            return adjust(1);
+        }
+
+        Code pushDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (bits == 0L) {
+                u1(DCONST_0);
+            } else if (bits == Double.doubleToRawLongBits(1.0)) {
+                u1(DCONST_1);
+            } else {
+                u1(LDC2_W);
+                u2(doubleConstant(value));
+            }
+            return adjust(2);
+        }
+
+        Code pushString(String value) {
+            return ldc(string(value));
+        }
+
+        /**
+         * Pushes a {@code Class} constant, {@code className} is an internal name or an array descriptor.
+         */
+        Code pushClass(String className) {
+            return ldc(classRef(className));
+        }
+
+        private Code ldc(int index) {
+            if (index <= 0xff) {
+                u1(LDC);
+                u1(index);
+            } else {
+                u1(LDC_W);
+                u2(index);
+            }
+            return adjust(1);
+        }
+
+        Code getStatic(String owner, String name, String descriptor) {
+            u1(GETSTATIC);
+            u2(fieldRef(owner, name, descriptor));
+            return adjust(slots(descriptor));
+        }
+
+        Code putStatic(String owner, String name, String descriptor) {
+            u1(PUTSTATIC);
+            u2(fieldRef(owner, name, descriptor));
+            return adjust(-slots(descriptor));
+        }
+
+        Code invokeStatic(String owner, String name, String descriptor) {
+            u1(INVOKESTATIC);
+            u2(methodRef(owner, name, descriptor));
+            return adjust(slots(descriptor) - argumentSlots(descriptor));
+        }
+
+        Code invokeSpecial(String owner, String name, String descriptor) {
+            u1(INVOKESPECIAL);
+            u2(methodRef(owner, name, descriptor));
+            return adjust(slots(descriptor) - argumentSlots(descriptor) - 1);
+        }
+
+        Code checkCast(String className) {
+            u1(CHECKCAST);
+            u2(classRef(className));
+            return this;
+        }
+
+        /**
+         * Finishes the method.
+         */
+        void end(int maxLocals) {
+            if (length > 0xffff) {
+                throw new IllegalStateException("Method too large for a class file.");
+            }
+            this.maxLocals = maxLocals;
+        }
+
+        int length() {
+            return length;
+        }
+
+        private Code adjust(int stackChange) {
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+            return this;
+        }
+
+        private void u1(int b) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) b;
+        }
+
+        private void u2(int s) {
+            u1(s >>> 8);
+            u1(s);
+        }
+
+        private void write(DataOutputStream out, int attributeName) throws IOException {
+            if (maxLocals < 0) {
+                throw new IllegalStateException("Method code isn't finished.");
+            }
+            out.writeShort(attributeName);
+            out.writeInt(2 + 2 + 4 + length + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            // No exception table and no attributes.
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+
+    private static class Member {
+        final int access;
+        final int name;
+        final int descriptor;
+        final Code code;
+
+        Member(int access, int name, int descriptor, Code code) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.code = code;
+        }
+
+        void write(DataOutputStream out, int codeAttribute) throws IOException {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            if (code == null) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                code.write(out, codeAttribute);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named columns of equal length, the input of {@link ColumnarEvaluator}. A column is a {@code double[]} of
+ * numbers or a {@code boolean[]} of booleans, a variable of the expression is bound to the column of its name.
+ * <p>
+ * The arrays are not copied, changing them changes the table.
+ */
+final class ColumnTable {
+    private final int rows;
+    private final Map<String, Object> columns = new HashMap<>();
+
+    ColumnTable(int rows) {
+        if (rows < 0) throw new IllegalArgumentException("Negative row count " + rows + ".");
+        this.rows = rows;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    ColumnTable add(String name, double[] values) {
+        return put(name, values, values.length);
+    }
+
+    ColumnTable add(String name, boolean[] values) {
+        return put(name, values, values.length);
+    }
+
+    /**
+     * The {@code double[]} or {@code boolean[]} of the column, or {@code null} when there is none.
+     */
+    Object column(String name) {
+        return columns.get(name);
+    }
+
+    private ColumnTable put(String name, Object values, int length) {
+        if (length != rows) {
+            throw new IllegalArgumentException(
+                    "Column '" + name + "' has " + length + " rows, the table has " + rows + ".");
+        }
+        columns.put(name, values);
+        return this;
+    }
+}
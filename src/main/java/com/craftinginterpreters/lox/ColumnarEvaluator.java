@@ -0,0 +1,432 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates one expression over every row of a {@link ColumnTable}, a batch of rows at a time.
+ * <p>
+ * The tree is planned once: every operator becomes a step that runs one tight loop over a batch of
+ * {@link #BATCH_SIZE} rows, reading the {@code double[]} or {@code boolean[]} of its operands and writing its own.
+ * The dispatch on the node and the operator is paid once per batch and not once per row like in
+ * {@link Interpreter}, and the loops are simple enough for the JIT to unroll and vectorize. The steps run in
+ * post-order, so a batch of every intermediate value is still in the cache when it is read.
+ * <p>
+ * All the rows of a column have the same type, so the type of every node is known when planning, and the
+ * type errors of {@link Interpreter} are raised by the constructor, with the same messages. Subtrees without
+ * variables are evaluated once while planning. Comparing a number with a boolean is a constant, and so is
+ * {@code !} of a number.
+ * <p>
+ * Not thread-safe, the buffers of the intermediate values are shared by every evaluation.
+ */
+final class ColumnarEvaluator {
+    static final int BATCH_SIZE = 1024;
+
+    enum Type {
+        NUMBER, BOOLEAN
+    }
+
+    private final int rows;
+    private final Step[] steps;
+    private final Value result;
+
+    /**
+     * Plans the evaluation of {@code expr}, its variables are bound to the columns of {@code table}.
+     * @throws RuntimeError When a variable has no column or for an operand of the wrong type
+     * @throws IllegalArgumentException When the value of the expression is neither a number nor a boolean
+     */
+    ColumnarEvaluator(Expr expr, ColumnTable table) {
+        Planner planner = new Planner(table);
+        result = expr.accept(planner);
+        if (result.type == null) {
+            throw new IllegalArgumentException("The expression is always " + Interpreter.stringify(result.constant)
+                    + ", not a number or a boolean.");
+        }
+        rows = table.rows();
+        steps = planner.steps.toArray(new Step[0]);
+        for (Step step : steps) {
+            // The last step writes straight into the array of the result.
+            if (step.out != result) step.out.allocate();
+        }
+        result.moves = true;
+    }
+
+    Type type() {
+        return result.type;
+    }
+
+    /**
+     * Evaluates the expression for every row.
+     * @throws IllegalStateException When the expression is a boolean
+     */
+    double[] evaluateNumbers() {
+        checkType(Type.NUMBER);
+        double[] values = new double[rows];
+        if (result.isConstant) {
+            Arrays.fill(values, (double) result.constant);
+        } else if (steps.length == 0) {
+            System.arraycopy(result.numbers, 0, values, 0, rows);
+        } else {
+            result.numbers = values;
+            run();
+        }
+        return values;
+    }
+
+    /**
+     * Evaluates the expression for every row.
+     * @throws IllegalStateException When the expression is a number
+     */
+    boolean[] evaluateBooleans() {
+        checkType(Type.BOOLEAN);
+        boolean[] values = new boolean[rows];
+        if (result.isConstant) {
+            Arrays.fill(values, (boolean) result.constant);
+        } else if (steps.length == 0) {
+            System.arraycopy(result.booleans, 0, values, 0, rows);
+        } else {
+            result.booleans = values;
+            run();
+        }
+        return values;
+    }
+
+    private void checkType(Type type) {
+        if (result.type != type) {
+            throw new IllegalStateException("The expression is a " + result.type.name().toLowerCase() + ".");
+        }
+    }
+
+    private void run() {
+        for (int start = 0; start < rows; start += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, rows - start);
+            for (Step step : steps) {
+                step.run(start, count);
+            }
+        }
+    }
+
+    /**
+     * The value of a node: a constant, a column of the table, or the buffer written by a step.
+     */
+    private static final class Value {
+        /**
+         * {@code null} for a constant that is neither a number nor a boolean.
+         */
+        final Type type;
+        final boolean isConstant;
+        final Object constant;
+        double[] numbers;
+        boolean[] booleans;
+        /**
+         * Whether the array holds every row, and the batch starts at its first row. Otherwise it holds just the
+         * batch, from index 0.
+         */
+        boolean moves;
+
+        private Value(Type type, boolean isConstant, Object constant) {
+            this.type = type;
+            this.isConstant = isConstant;
+            this.constant = constant;
+        }
+
+        static Value constant(Object value) {
+            Type type = value instanceof Double ? Type.NUMBER : value instanceof Boolean ? Type.BOOLEAN : null;
+            return new Value(type, true, value);
+        }
+
+        static Value column(double[] values) {
+            Value value = new Value(Type.NUMBER, false, null);
+            value.numbers = values;
+            value.moves = true;
+            return value;
+        }
+
+        static Value column(boolean[] values) {
+            Value value = new Value(Type.BOOLEAN, false, null);
+            value.booleans = values;
+            value.moves = true;
+            return value;
+        }
+
+        static Value computed(Type type) {
+            return new Value(type, false, null);
+        }
+
+        /**
+         * Creates the buffer of a computed value, or a batch filled with a constant.
+         */
+        void allocate() {
+            if (type == Type.NUMBER) {
+                numbers = new double[BATCH_SIZE];
+                if (isConstant) Arrays.fill(numbers, (double) constant);
+            } else {
+                booleans = new boolean[BATCH_SIZE];
+                if (isConstant) Arrays.fill(booleans, (boolean) constant);
+            }
+        }
+
+        int offset(int start) {
+            return moves ? start : 0;
+        }
+    }
+
+    /**
+     * Turns the tree into constants, columns and steps, checking the operand types the way
+     * {@link Interpreter} does.
+     */
+    private static final class Planner implements Expr.Visitor<Value> {
+        private final ColumnTable table;
+        final List<Step> steps = new ArrayList<>();
+
+        Planner(ColumnTable table) {
+            this.table = table;
+        }
+
+        @Override
+        public Value visitBinaryExpr(Expr.Binary expr) {
+            Value left = expr.left.accept(this);
+            Value right = expr.right.accept(this);
+            Token operator = expr.operator;
+            if (left.isConstant && right.isConstant) {
+                return Value.constant(Operators.binary(left.constant, operator, right.constant));
+            }
+            switch (operator.type) {
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                    if (left.type != right.type) return Value.constant(operator.type == TokenType.BANG_EQUAL);
+                    if (left.type == Type.NUMBER) {
+                        return add(new Comparison(operator.type, operand(left), operand(right)));
+                    }
+                    return add(new BooleanEquality(operator.type, operand(left), operand(right)));
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    checkNumberOperands(operator, left, right, Operators.NUMBER_OPERANDS);
+                    return add(new Comparison(operator.type, operand(left), operand(right)));
+                case PLUS:
+                    // A column is never a string.
+                    checkNumberOperands(operator, left, right, Operators.ADD_OPERANDS);
+                    return add(new Arithmetic(operator.type, operand(left), operand(right)));
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    checkNumberOperands(operator, left, right, Operators.NUMBER_OPERANDS);
+                    return add(new Arithmetic(operator.type, operand(left), operand(right)));
+                default:
+                    throw new IllegalArgumentException("Unknown operator " + operator.type);
+            }
+        }
+
+        @Override
+        public Value visitGroupingExpr(Expr.Grouping expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Value visitLiteralExpr(Expr.Literal expr) {
+            return Value.constant(expr.value);
+        }
+
+        @Override
+        public Value visitUnaryExpr(Expr.Unary expr) {
+            Value right = expr.right.accept(this);
+            if (right.isConstant) return Value.constant(Operators.unary(expr.operator, right.constant));
+            if (expr.operator.type == TokenType.BANG) {
+                // Every number is truthy.
+                if (right.type == Type.NUMBER) return Value.constant(false);
+                return add(new Not(right));
+            }
+            if (right.type != Type.NUMBER) throw new RuntimeError(expr.operator, Operators.NUMBER_OPERAND);
+            return add(new Negate(right));
+        }
+
+        @Override
+        public Value visitVariableExpr(Expr.Variable expr) {
+            Object column = table.column(expr.name.lexeme);
+            if (column instanceof double[]) return Value.column((double[]) column);
+            if (column instanceof boolean[]) return Value.column((boolean[]) column);
+            return Value.constant(Operators.undefined(expr.name));
+        }
+
+        private static void checkNumberOperands(Token operator, Value left, Value right, String message) {
+            if (left.type == Type.NUMBER && right.type == Type.NUMBER) return;
+            throw new RuntimeError(operator, message);
+        }
+
+        /**
+         * A constant operand of a step is read like a column, from a batch filled with it.
+         */
+        private static Value operand(Value value) {
+            if (value.isConstant && value.numbers == null && value.booleans == null) value.allocate();
+            return value;
+        }
+
+        private Value add(Step step) {
+            steps.add(step);
+            return step.out;
+        }
+    }
+
+    /**
+     * One node, evaluated for a batch of rows.
+     */
+    private abstract static class Step {
+        final Value out;
+
+        Step(Type type) {
+            out = Value.computed(type);
+        }
+
+        abstract void run(int start, int count);
+    }
+
+    private static final class Arithmetic extends Step {
+        private final TokenType operator;
+        private final Value left;
+        private final Value right;
+
+        Arithmetic(TokenType operator, Value left, Value right) {
+            super(Type.NUMBER);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void run(int start, int count) {
+            double[] a = left.numbers;
+            double[] b = right.numbers;
+            double[] c = out.numbers;
+            int ai = left.offset(start);
+            int bi = right.offset(start);
+            int ci = out.offset(start);
+            switch (operator) {
+                case PLUS:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] + b[bi + i];
+                    break;
+                case MINUS:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] - b[bi + i];
+                    break;
+                case STAR:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] * b[bi + i];
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] / b[bi + i];
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Comparisons of numbers, equality is {@code Double.equals} like in {@link Operators#isEqual(Object, Object)}.
+     */
+    private static final class Comparison extends Step {
+        private final TokenType operator;
+        private final Value left;
+        private final Value right;
+
+        Comparison(TokenType operator, Value left, Value right) {
+            super(Type.BOOLEAN);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void run(int start, int count) {
+            double[] a = left.numbers;
+            double[] b = right.numbers;
+            boolean[] c = out.booleans;
+            int ai = left.offset(start);
+            int bi = right.offset(start);
+            int ci = out.offset(start);
+            switch (operator) {
+                case GREATER:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] > b[bi + i];
+                    break;
+                case GREATER_EQUAL:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] >= b[bi + i];
+                    break;
+                case LESS:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] < b[bi + i];
+                    break;
+                case LESS_EQUAL:
+                    for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] <= b[bi + i];
+                    break;
+                case EQUAL_EQUAL:
+                    for (int i = 0; i < count; i++) c[ci + i] = Double.compare(a[ai + i], b[bi + i]) == 0;
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) c[ci + i] = Double.compare(a[ai + i], b[bi + i]) != 0;
+                    break;
+            }
+        }
+    }
+
+    private static final class BooleanEquality extends Step {
+        private final boolean negated;
+        private final Value left;
+        private final Value right;
+
+        BooleanEquality(TokenType operator, Value left, Value right) {
+            super(Type.BOOLEAN);
+            this.negated = operator == TokenType.BANG_EQUAL;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void run(int start, int count) {
+            boolean[] a = left.booleans;
+            boolean[] b = right.booleans;
+            boolean[] c = out.booleans;
+            int ai = left.offset(start);
+            int bi = right.offset(start);
+            int ci = out.offset(start);
+            if (negated) {
+                for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] != b[bi + i];
+            } else {
+                for (int i = 0; i < count; i++) c[ci + i] = a[ai + i] == b[bi + i];
+            }
+        }
+    }
+
+    private static final class Negate extends Step {
+        private final Value right;
+
+        Negate(Value right) {
+            super(Type.NUMBER);
+            this.right = right;
+        }
+
+        @Override
+        void run(int start, int count) {
+            double[] a = right.numbers;
+            double[] c = out.numbers;
+            int ai = right.offset(start);
+            int ci = out.offset(start);
+            for (int i = 0; i < count; i++) c[ci + i] = -a[ai + i];
+        }
+    }
+
+    private static final class Not extends Step {
+        private final Value right;
+
+        Not(Value right) {
+            super(Type.BOOLEAN);
+            this.right = right;
+        }
+
+        @Override
+        void run(int start, int count) {
+            boolean[] a = right.booleans;
+            boolean[] c = out.booleans;
+            int ai = right.offset(start);
+            int ci = out.offset(start);
+            for (int i = 0; i < count; i++) c[ci + i] = !a[ai + i];
+        }
+    }
+}
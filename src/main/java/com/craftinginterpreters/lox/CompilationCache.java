@@ -0,0 +1,213 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of parsed trees, keyed by the SHA-256 of the source bytes, the charset they are decoded with
+ * and the {@link AstSerializer#VERSION}.
+ * <p>
+ * A changed script, another platform charset or another format has a different key, so entries never go
+ * stale. Entries damaged on disk are treated as misses and deleted. The total size is bounded, the least
+ * recently used entries (by modification time, refreshed on every hit) are evicted first. The directory is only
+ * listed by the first store and whenever the size it found plus what was stored since exceeds the bound. The
+ * cache is best effort: I/O failures only turn into misses.
+ */
+class CompilationCache {
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final String SUFFIX = ".ast";
+    private static final String TEMP_PREFIX = "entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * Age after which a temporary file is left over from a writer that died before moving it into place.
+     */
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private final Path directory;
+    private final long maxBytes;
+    /**
+     * Size of the entries as of the last listing plus the size of every entry stored since, {@code -1} before
+     * the first listing. Entries stored by other processes in between are only seen by the next listing.
+     */
+    private long estimatedBytes = -1;
+
+    CompilationCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * {@code ~/.cache/jlox}.
+     */
+    static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "jlox");
+    }
+
+    /**
+     * @return The cached statements of the source, or {@code null} on a miss
+     */
+    List<Expr> load(byte[] source) {
+        Path path = pathOf(source);
+        if (!Files.isRegularFile(path)) return null;
+        List<Expr> statements;
+        try {
+            statements = AstSerializer.deserialize(Files.readAllBytes(path));
+        } catch (IOException | RuntimeException error) {
+            // A corrupt entry is a miss, whatever the decoder tripped over. The decoder doesn't recurse, so
+            // however deep the trees it can't overflow the stack.
+            delete(path);
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Only makes the entry look older to the eviction.
+        }
+        return statements;
+    }
+
+    void store(byte[] source, List<Expr> statements) {
+        Path path = pathOf(source);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            // Write aside and move, so a concurrent reader never sees half an entry.
+            temp = Files.createTempFile(directory, TEMP_PREFIX, TEMP_SUFFIX);
+            byte[] entry = AstSerializer.serialize(statements);
+            Files.write(temp, entry);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            stored(entry.length);
+        } catch (IOException ignored) {
+            // Not being able to cache only costs the next run a parse.
+        } finally {
+            // A failed write or move leaves the temporary file behind.
+            if (temp != null) delete(temp);
+        }
+    }
+
+    void invalidate(byte[] source) {
+        delete(pathOf(source));
+    }
+
+    void clear() {
+        for (Path entry : entries()) {
+            delete(entry);
+        }
+    }
+
+    /**
+     * Counts a stored entry and evicts once the estimate exceeds {@code maxBytes}. Replacing an entry counts it
+     * twice, which only makes the next listing come sooner.
+     */
+    private synchronized void stored(long bytes) throws IOException {
+        if (estimatedBytes >= 0) {
+            estimatedBytes += bytes;
+            if (estimatedBytes <= maxBytes) return;
+        }
+        estimatedBytes = evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in {@code maxBytes}, and the temporary files
+     * of writers that were killed before they could delete them.
+     * @return The size of the entries left
+     */
+    private long evict() throws IOException {
+        deleteStaleTemps();
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        for (Path path : entries()) {
+            Entry entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path));
+            entries.add(entry);
+            total += entry.size;
+        }
+        if (total <= maxBytes) return total;
+        entries.sort(Comparator.comparing(entry -> entry.lastUsed));
+        for (Entry entry : entries) {
+            if (total <= maxBytes) break;
+            delete(entry.path);
+            total -= entry.size;
+        }
+        return total;
+    }
+
+    private static class Entry {
+        final Path path;
+        final long size;
+        final FileTime lastUsed;
+
+        Entry(Path path, long size, FileTime lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private void deleteStaleTemps() {
+        long stale = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, TEMP_PREFIX + "*" + TEMP_SUFFIX)) {
+            for (Path temp : temps) {
+                // Younger ones may still be written by another process.
+                if (Files.getLastModifiedTime(temp).toMillis() < stale) delete(temp);
+            }
+        } catch (IOException ignored) {
+            // Retried on the next eviction.
+        }
+    }
+
+    private List<Path> entries() {
+        List<Path> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(entries::add);
+        } catch (IOException ignored) {
+            // An unreadable directory is an empty cache.
+        }
+        return entries;
+    }
+
+    private Path pathOf(byte[] source) {
+        return directory.resolve(key(source) + SUFFIX);
+    }
+
+    /**
+     * The bytes are decoded with the platform charset, like {@code Lox.runBytes} does, so the same bytes read
+     * with another charset can be other tokens.
+     */
+    static String key(byte[] source) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(AstSerializer.VERSION);
+            sha.update(Charset.defaultCharset().name().getBytes(StandardCharsets.US_ASCII));
+            // Charset names can't contain a NUL, so the name ends before the source starts.
+            sha.update((byte) 0);
+            byte[] digest = sha.digest(source);
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException error) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Retried on the next eviction.
+        }
+    }
+}
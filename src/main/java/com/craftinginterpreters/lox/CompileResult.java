@@ -0,0 +1,35 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one {@link LoxCompiler#compile(String)}: the statements, unless there were errors, and the errors.
+ */
+final class CompileResult {
+    private final List<Expr> statements;
+    private final Diagnostics diagnostics;
+
+    CompileResult(List<Expr> statements, Diagnostics diagnostics) {
+        this.statements = diagnostics.hadError() ? Collections.emptyList() : statements;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * @return The trees of the statements, empty if there were errors
+     */
+    List<Expr> statements() {
+        return statements;
+    }
+
+    boolean hasErrors() {
+        return diagnostics.hadError();
+    }
+
+    /**
+     * The errors, formatted like the command line prints them.
+     */
+    List<String> messages() {
+        return diagnostics.messages();
+    }
+}
@@ -0,0 +1,11 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * An expression compiled to a JVM class by {@link JvmCompiler}.
+ */
+interface CompiledExpr {
+    /**
+     * Evaluates the expression, the same value or {@link RuntimeError} as {@link Interpreter#evaluate(Expr)}.
+     */
+    Object evaluate();
+}
@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Replaces operators whose operands are all literals with the literal of their value.
+ * <p>
+ * Operators that would fail at runtime, like {@code "a" - 1}, are left in place so the error is
+ * still reported when the expression is evaluated.
+ */
+class ConstantFolding extends Pass {
+    private final Interpreter interpreter = new Interpreter();
+
+    @Override
+    String name() {
+        return "constant-folding";
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr folded = super.visitBinaryExpr(expr);
+        Expr.Binary binary = (Expr.Binary) folded;
+        if (unwrap(binary.left) instanceof Expr.Literal && unwrap(binary.right) instanceof Expr.Literal) {
+            return fold(folded);
+        }
+        return folded;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr expression = expr.expression.accept(this);
+        // A grouped literal is just the literal.
+        if (expression instanceof Expr.Literal) return expression;
+        if (expression == expr.expression) return expr;
+        return new Expr.Grouping(expression);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr folded = super.visitUnaryExpr(expr);
+        if (unwrap(((Expr.Unary) folded).right) instanceof Expr.Literal) {
+            return fold(folded);
+        }
+        return folded;
+    }
+
+    private Expr fold(Expr expr) {
+        try {
+            return new Expr.Literal(expr.accept(interpreter));
+        } catch (RuntimeError error) {
+            return expr;
+        }
+    }
+}
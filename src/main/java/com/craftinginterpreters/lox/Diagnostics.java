@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the errors of one compilation or session, formatted like the command line prints them.
+ * Not thread-safe, every thread compiles with its own instance.
+ */
+final class Diagnostics implements ErrorReporter {
+    private final List<String> messages = new ArrayList<>();
+    private boolean hadError = false;
+    private boolean hadRuntimeError = false;
+
+    @Override
+    public void report(int line, String where, String message) {
+        messages.add(ErrorReporter.format(line, where, message));
+        hadError = true;
+    }
+
+    /**
+     * Adds a runtime error of the session, it doesn't count as a compile error.
+     */
+    void runtimeError(RuntimeError error) {
+        messages.add(ErrorReporter.format(error));
+        hadRuntimeError = true;
+    }
+
+    boolean hadError() {
+        return hadError;
+    }
+
+    boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    /**
+     * The errors in the order they were reported.
+     */
+    List<String> messages() {
+        return messages;
+    }
+
+    /**
+     * Forgets the errors, for example before the next line of a session.
+     */
+    void clear() {
+        messages.clear();
+        hadError = false;
+        hadRuntimeError = false;
+    }
+}
@@ -0,0 +1,35 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Receives the compile errors of {@link Scanner} and {@link Parser}. Runtime errors don't go through it, the
+ * backends report them to {@link Lox#runtimeError(RuntimeError)}, or throw them to their caller.
+ * <p>
+ * {@link Lox#REPORTER} prints them to stderr and sets the exit status of the command line. Code that
+ * compiles on several threads at once gives every compilation its own {@link Diagnostics} instead.
+ */
+interface ErrorReporter {
+    /**
+     * @param where Where on the line, like {@code " at end"}, or empty
+     */
+    void report(int line, String where, String message);
+
+    default void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    default void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    static String format(int line, String where, String message) {
+        return "[line " + line + "] Error" + where + ": " + message;
+    }
+
+    static String format(RuntimeError error) {
+        return error.getMessage() + "\n[line " + error.token.line + "]";
+    }
+}
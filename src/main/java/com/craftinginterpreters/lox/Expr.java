@@ -1,6 +1,7 @@
 package com.craftinginterpreters.lox;
 
 import java.util.List;
+import java.util.Objects;
 
 abstract class Expr {
     interface Visitor<R> {
@@ -12,6 +13,8 @@ abstract class Expr {
 
         R visitUnaryExpr(Unary expr);
 
+        R visitVariableExpr(Variable expr);
+
     }
 
     static class Binary extends Expr {
@@ -29,6 +32,25 @@ abstract class Expr {
         final Expr left;
         final Token operator;
         final Expr right;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Binary)) return false;
+            Binary other = (Binary) o;
+            if (hashCode() != other.hashCode()) return false;
+            return Objects.equals(left, other.left) && sameToken(operator, other.operator) && Objects.equals(right, other.right);
+        }
+
+        @Override
+        int computeHash() {
+            int h = Binary.class.hashCode();
+            h = 31 * h + Objects.hashCode(left);
+            h = 31 * h + operator.type.hashCode();
+            h = 31 * h + operator.lexeme.hashCode();
+            h = 31 * h + Objects.hashCode(right);
+            return h;
+        }
     }
 
     static class Grouping extends Expr {
@@ -42,6 +64,22 @@ abstract class Expr {
         }
 
         final Expr expression;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Grouping)) return false;
+            Grouping other = (Grouping) o;
+            if (hashCode() != other.hashCode()) return false;
+            return Objects.equals(expression, other.expression);
+        }
+
+        @Override
+        int computeHash() {
+            int h = Grouping.class.hashCode();
+            h = 31 * h + Objects.hashCode(expression);
+            return h;
+        }
     }
 
     static class Literal extends Expr {
@@ -55,6 +93,22 @@ abstract class Expr {
         }
 
         final Object value;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Literal)) return false;
+            Literal other = (Literal) o;
+            if (hashCode() != other.hashCode()) return false;
+            return Objects.equals(value, other.value);
+        }
+
+        @Override
+        int computeHash() {
+            int h = Literal.class.hashCode();
+            h = 31 * h + Objects.hashCode(value);
+            return h;
+        }
     }
 
     static class Unary extends Expr {
@@ -70,7 +124,82 @@ abstract class Expr {
 
         final Token operator;
         final Expr right;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Unary)) return false;
+            Unary other = (Unary) o;
+            if (hashCode() != other.hashCode()) return false;
+            return sameToken(operator, other.operator) && Objects.equals(right, other.right);
+        }
+
+        @Override
+        int computeHash() {
+            int h = Unary.class.hashCode();
+            h = 31 * h + operator.type.hashCode();
+            h = 31 * h + operator.lexeme.hashCode();
+            h = 31 * h + Objects.hashCode(right);
+            return h;
+        }
+    }
+
+    static class Variable extends Expr {
+        Variable(Token name) {
+            this.name = name;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitVariableExpr(this);
+        }
+
+        final Token name;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Variable)) return false;
+            Variable other = (Variable) o;
+            if (hashCode() != other.hashCode()) return false;
+            return sameToken(name, other.name);
+        }
+
+        @Override
+        int computeHash() {
+            int h = Variable.class.hashCode();
+            h = 31 * h + name.type.hashCode();
+            h = 31 * h + name.lexeme.hashCode();
+            return h;
+        }
     }
 
     abstract <R> R accept(Visitor<R> visitor);
+
+    /**
+     * Cached structural hash, 0 until first computed.
+     */
+    private int hash;
+
+    abstract int computeHash();
+
+    @Override
+    public final int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = computeHash();
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Cached {@link NumberEvaluator#isNumeric}, 0 until first computed. The trees are immutable, so it never
+     * changes once set.
+     */
+    byte numeric;
+
+    static boolean sameToken(Token a, Token b) {
+        return a.type == b.type && a.lexeme.equals(b.lexeme);
+    }
 }
@@ -0,0 +1,394 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Flat encoding of {@link Expr} trees, generated by {@code GenerateAst}.
+ * <p>
+ * A node is an id into parallel arrays: its kind, the ids of its child nodes, and the indexes of its
+ * tokens and other values in two pools. A tree costs a few arrays instead of an object per node, and
+ * traversals read consecutive memory. Children are always added before their parents, so they have
+ * smaller ids and {@link #reduce(PostOrderVisitor)} can visit a tree in a single loop.
+ */
+final class ExprArena {
+    static final byte BINARY = 0;
+    static final byte GROUPING = 1;
+    static final byte LITERAL = 2;
+    static final byte UNARY = 3;
+    static final byte VARIABLE = 4;
+
+    private byte[] kinds;
+    private int[] child0;
+    private int[] child1;
+    private int[] token0;
+    private int[] value0;
+    private int size = 0;
+    private Token[] tokenPool;
+    private int tokenCount = 0;
+    private Object[] valuePool;
+    private int valueCount = 0;
+
+    ExprArena() {
+        this(16);
+    }
+
+    ExprArena(int capacity) {
+        capacity = Math.max(capacity, 1);
+        kinds = new byte[capacity];
+        child0 = new int[capacity];
+        child1 = new int[capacity];
+        token0 = new int[capacity];
+        value0 = new int[capacity];
+        tokenPool = new Token[capacity];
+        valuePool = new Object[capacity];
+    }
+
+    /**
+     * Visits a node by id, the fields are read through the accessors of the arena.
+     */
+    interface Visitor<R> {
+        R visitBinaryExpr(int id);
+
+        R visitGroupingExpr(int id);
+
+        R visitLiteralExpr(int id);
+
+        R visitUnaryExpr(int id);
+
+        R visitVariableExpr(int id);
+    }
+
+    /**
+     * Computes the result of a node from the results of its children.
+     */
+    interface PostOrderVisitor<R> {
+        R visitBinaryExpr(int id, R left, R right);
+
+        R visitGroupingExpr(int id, R expression);
+
+        R visitLiteralExpr(int id);
+
+        R visitUnaryExpr(int id, R right);
+
+        R visitVariableExpr(int id);
+    }
+
+    /**
+     * Adds a {@code Binary} node, its children must already be in the arena.
+     * @return The id of the node
+     */
+    int binary(int left, Token operator, int right) {
+        checkId(left);
+        checkId(right);
+        int id = newNode(BINARY);
+        child0[id] = left;
+        token0[id] = addToken(operator);
+        child1[id] = right;
+        return id;
+    }
+
+    /**
+     * Adds a {@code Grouping} node, its children must already be in the arena.
+     * @return The id of the node
+     */
+    int grouping(int expression) {
+        checkId(expression);
+        int id = newNode(GROUPING);
+        child0[id] = expression;
+        return id;
+    }
+
+    /**
+     * Adds a {@code Literal} node, its children must already be in the arena.
+     * @return The id of the node
+     */
+    int literal(Object value) {
+        int id = newNode(LITERAL);
+        value0[id] = addValue(value);
+        return id;
+    }
+
+    /**
+     * Adds a {@code Unary} node, its children must already be in the arena.
+     * @return The id of the node
+     */
+    int unary(Token operator, int right) {
+        checkId(right);
+        int id = newNode(UNARY);
+        token0[id] = addToken(operator);
+        child0[id] = right;
+        return id;
+    }
+
+    /**
+     * Adds a {@code Variable} node, its children must already be in the arena.
+     * @return The id of the node
+     */
+    int variable(Token name) {
+        int id = newNode(VARIABLE);
+        token0[id] = addToken(name);
+        return id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte kind(int id) {
+        return kinds[id];
+    }
+
+    int binaryLeft(int id) {
+        return child0[id];
+    }
+
+    Token binaryOperator(int id) {
+        return tokenPool[token0[id]];
+    }
+
+    int binaryRight(int id) {
+        return child1[id];
+    }
+
+    int groupingExpression(int id) {
+        return child0[id];
+    }
+
+    Object literalValue(int id) {
+        return valuePool[value0[id]];
+    }
+
+    Token unaryOperator(int id) {
+        return tokenPool[token0[id]];
+    }
+
+    int unaryRight(int id) {
+        return child0[id];
+    }
+
+    Token variableName(int id) {
+        return tokenPool[token0[id]];
+    }
+
+    <R> R accept(int id, Visitor<R> visitor) {
+        switch (kinds[id]) {
+            case BINARY:
+                return visitor.visitBinaryExpr(id);
+            case GROUPING:
+                return visitor.visitGroupingExpr(id);
+            case LITERAL:
+                return visitor.visitLiteralExpr(id);
+            case UNARY:
+                return visitor.visitUnaryExpr(id);
+            case VARIABLE:
+                return visitor.visitVariableExpr(id);
+            default:
+                throw new IllegalStateException("Unknown kind " + kinds[id] + ".");
+        }
+    }
+
+    /**
+     * Visits the tree of the root in post-order with an explicit stack, so trees of any depth can be visited.
+     * @return The result of the root
+     */
+    @SuppressWarnings("unchecked")
+    <R> R walk(int root, PostOrderVisitor<R> visitor) {
+        checkId(root);
+        int[] nodes = new int[16];
+        // Whether the children of the node are already on the stack.
+        boolean[] expanded = new boolean[16];
+        int depth = 0;
+        Object[] results = new Object[16];
+        int count = 0;
+        nodes[depth++] = root;
+        while (depth > 0) {
+            int id = nodes[depth - 1];
+            if (!expanded[depth - 1]) {
+                expanded[depth - 1] = true;
+                if (depth + 2 > nodes.length) {
+                    nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    expanded = Arrays.copyOf(expanded, expanded.length * 2);
+                }
+                // The last child goes first, so the first one is on top and visited first.
+                switch (kinds[id]) {
+                    case BINARY:
+                        nodes[depth] = child1[id];
+                        expanded[depth++] = false;
+                        nodes[depth] = child0[id];
+                        expanded[depth++] = false;
+                        continue;
+                    case GROUPING:
+                        nodes[depth] = child0[id];
+                        expanded[depth++] = false;
+                        continue;
+                    case UNARY:
+                        nodes[depth] = child0[id];
+                        expanded[depth++] = false;
+                        continue;
+                }
+            }
+            depth--;
+            R result;
+            switch (kinds[id]) {
+                case BINARY: {
+                    R right = (R) results[--count];
+                    R left = (R) results[--count];
+                    result = visitor.visitBinaryExpr(id, left, right);
+                    break;
+                }
+                case GROUPING: {
+                    R expression = (R) results[--count];
+                    result = visitor.visitGroupingExpr(id, expression);
+                    break;
+                }
+                case LITERAL: {
+                    result = visitor.visitLiteralExpr(id);
+                    break;
+                }
+                case UNARY: {
+                    R right = (R) results[--count];
+                    result = visitor.visitUnaryExpr(id, right);
+                    break;
+                }
+                case VARIABLE: {
+                    result = visitor.visitVariableExpr(id);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown kind " + kinds[id] + ".");
+            }
+            if (count == results.length) results = Arrays.copyOf(results, count * 2);
+            results[count++] = result;
+        }
+        return (R) results[0];
+    }
+
+    /**
+     * Visits every node of the arena in id order, which visits children before their parents, without a
+     * stack. Meant for an arena holding one tree: the nodes of every tree in the arena are visited.
+     * @return The result of the last node added, the root when the arena holds one tree
+     */
+    @SuppressWarnings("unchecked")
+    <R> R reduce(PostOrderVisitor<R> visitor) {
+        if (size == 0) throw new IllegalStateException("Empty arena.");
+        Object[] results = new Object[size];
+        for (int id = 0; id < size; id++) {
+            switch (kinds[id]) {
+                case BINARY:
+                    results[id] = visitor.visitBinaryExpr(id, (R) results[child0[id]], (R) results[child1[id]]);
+                    break;
+                case GROUPING:
+                    results[id] = visitor.visitGroupingExpr(id, (R) results[child0[id]]);
+                    break;
+                case LITERAL:
+                    results[id] = visitor.visitLiteralExpr(id);
+                    break;
+                case UNARY:
+                    results[id] = visitor.visitUnaryExpr(id, (R) results[child0[id]]);
+                    break;
+                case VARIABLE:
+                    results[id] = visitor.visitVariableExpr(id);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown kind " + kinds[id] + ".");
+            }
+        }
+        return (R) results[size - 1];
+    }
+
+    /**
+     * Adds the nodes of a tree, children before parents, without recursion.
+     * @return The id of the root
+     */
+    int add(Expr root) {
+        return PostOrder.walk(root, new PostOrder.Visitor<Integer>() {
+            @Override
+            public Integer visitBinaryExpr(Expr.Binary expr, Integer left, Integer right) {
+                return binary(left, expr.operator, right);
+            }
+
+            @Override
+            public Integer visitGroupingExpr(Expr.Grouping expr, Integer expression) {
+                return grouping(expression);
+            }
+
+            @Override
+            public Integer visitLiteralExpr(Expr.Literal expr) {
+                return literal(expr.value);
+            }
+
+            @Override
+            public Integer visitUnaryExpr(Expr.Unary expr, Integer right) {
+                return unary(expr.operator, right);
+            }
+
+            @Override
+            public Integer visitVariableExpr(Expr.Variable expr) {
+                return variable(expr.name);
+            }
+        });
+    }
+
+    /**
+     * Builds the Expr tree of a node, without recursion.
+     */
+    Expr toExpr(int root) {
+        return walk(root, new PostOrderVisitor<Expr>() {
+            @Override
+            public Expr visitBinaryExpr(int id, Expr left, Expr right) {
+                return new Expr.Binary(left, binaryOperator(id), right);
+            }
+
+            @Override
+            public Expr visitGroupingExpr(int id, Expr expression) {
+                return new Expr.Grouping(expression);
+            }
+
+            @Override
+            public Expr visitLiteralExpr(int id) {
+                return new Expr.Literal(literalValue(id));
+            }
+
+            @Override
+            public Expr visitUnaryExpr(int id, Expr right) {
+                return new Expr.Unary(unaryOperator(id), right);
+            }
+
+            @Override
+            public Expr visitVariableExpr(int id) {
+                return new Expr.Variable(variableName(id));
+            }
+        });
+    }
+
+    private int newNode(byte kind) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            child0 = Arrays.copyOf(child0, capacity);
+            child1 = Arrays.copyOf(child1, capacity);
+            token0 = Arrays.copyOf(token0, capacity);
+            value0 = Arrays.copyOf(value0, capacity);
+        }
+        kinds[size] = kind;
+        return size++;
+    }
+
+    private int addToken(Token token) {
+        if (tokenCount == tokenPool.length) tokenPool = Arrays.copyOf(tokenPool, tokenCount * 2);
+        tokenPool[tokenCount] = token;
+        return tokenCount++;
+    }
+
+    private int addValue(Object value) {
+        if (valueCount == valuePool.length) valuePool = Arrays.copyOf(valuePool, valueCount * 2);
+        valuePool[valueCount] = value;
+        return valueCount++;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("No node " + id + " in an arena of " + size + ".");
+        }
+    }
+}
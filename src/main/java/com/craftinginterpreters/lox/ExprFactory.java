@@ -0,0 +1,29 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Creates the nodes built by {@link Parser}. The default methods just allocate a new node.
+ */
+interface ExprFactory {
+    ExprFactory PLAIN = new ExprFactory() {
+    };
+
+    default Expr binary(Expr left, Token operator, Expr right) {
+        return new Expr.Binary(left, operator, right);
+    }
+
+    default Expr grouping(Expr expression) {
+        return new Expr.Grouping(expression);
+    }
+
+    default Expr literal(Object value) {
+        return new Expr.Literal(value);
+    }
+
+    default Expr unary(Token operator, Expr right) {
+        return new Expr.Unary(operator, right);
+    }
+
+    default Expr variable(Token name) {
+        return new Expr.Variable(name);
+    }
+}
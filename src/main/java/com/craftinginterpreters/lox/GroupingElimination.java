@@ -0,0 +1,16 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Drops every {@link Expr.Grouping}, the tree shape already encodes the precedence.
+ */
+class GroupingElimination extends Pass {
+    @Override
+    String name() {
+        return "grouping-elimination";
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+}
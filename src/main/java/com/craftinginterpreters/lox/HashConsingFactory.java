@@ -0,0 +1,91 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Node factory that hash-conses: structurally equal subtrees (see {@code Expr.equals}) are built
+ * only once and shared.
+ * <p>
+ * Nodes are built bottom-up, so the children of a new node are already canonical and comparing them
+ * stops at the reference check. Operator tokens are compared by type and lexeme, a shared node keeps
+ * the line of the first occurrence. Because a shared node always has the same value, results can be
+ * memoized per node identity.
+ * <p>
+ * Not thread-safe, use one factory per parse or per thread.
+ */
+class HashConsingFactory implements ExprFactory {
+    /**
+     * Shallow sizes with compressed oops: 12 byte header, the fields, the cached hash, 8 byte aligned.
+     */
+    private static final int BINARY_BYTES = 32;
+    private static final int GROUPING_BYTES = 24;
+    private static final int LITERAL_BYTES = 24;
+    private static final int UNARY_BYTES = 24;
+    private static final int VARIABLE_BYTES = 24;
+
+    private final Map<Expr, Expr> nodes = new HashMap<>();
+    private long requested = 0;
+    private long shared = 0;
+    private long bytesSaved = 0;
+
+    @Override
+    public Expr binary(Expr left, Token operator, Expr right) {
+        return intern(new Expr.Binary(left, operator, right), BINARY_BYTES);
+    }
+
+    @Override
+    public Expr grouping(Expr expression) {
+        return intern(new Expr.Grouping(expression), GROUPING_BYTES);
+    }
+
+    @Override
+    public Expr literal(Object value) {
+        return intern(new Expr.Literal(value), LITERAL_BYTES);
+    }
+
+    @Override
+    public Expr unary(Token operator, Expr right) {
+        return intern(new Expr.Unary(operator, right), UNARY_BYTES);
+    }
+
+    @Override
+    public Expr variable(Token name) {
+        return intern(new Expr.Variable(name), VARIABLE_BYTES);
+    }
+
+    private Expr intern(Expr node, int bytes) {
+        requested++;
+        Expr canonical = nodes.putIfAbsent(node, node);
+        if (canonical == null) return node;
+        shared++;
+        bytesSaved += bytes;
+        return canonical;
+    }
+
+    /**
+     * Number of nodes the parser asked for.
+     */
+    long requested() {
+        return requested;
+    }
+
+    /**
+     * Number of distinct nodes actually kept.
+     */
+    int unique() {
+        return nodes.size();
+    }
+
+    /**
+     * Estimated heap saved by the shared nodes, not counting the table itself.
+     */
+    long bytesSaved() {
+        return bytesSaved;
+    }
+
+    String report() {
+        return String.format("%d nodes requested, %d unique, %d shared (%.1f%%), ~%d bytes saved",
+                requested, unique(), shared, requested == 0 ? 0.0 : shared * 100.0 / requested, bytesSaved);
+    }
+}
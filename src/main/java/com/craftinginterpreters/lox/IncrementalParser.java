@@ -0,0 +1,397 @@
+package com.craftinginterpreters.lox;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.TokenType.EOF;
+
+/**
+ * Keeps the tokens and statement trees of a source that is being edited, and brings them up to date after every
+ * edit by re-scanning only the damaged tokens and re-parsing only the damaged statements.
+ * <p>
+ * An edit is re-scanned from the end of the last token it can't have changed, and only until the scanner
+ * produces a token identical to an old one past the edit: from there on the scanner would repeat the old token
+ * stream, so the old tokens are reused with their offsets shifted. Statements that end before the first
+ * re-scanned token keep their trees. Parsing resumes at the first damaged statement and stops at the first
+ * statement boundary past the re-scanned tokens that was a boundary before the edit, the trees of the following
+ * statements are reused. When the edit adds or removes lines those trees are copied with the lines of their
+ * operators shifted, the literals are still shared.
+ * <p>
+ * Tokens, trees and errors are always the ones {@link Parser#parseProgram()} gives for the whole new source.
+ * Moving the reused tokens and building the new source string are still linear in the size of the file, but
+ * far cheaper than scanning and parsing it.
+ */
+final class IncrementalParser {
+    private final SymbolTable symbols = new SymbolTable();
+    private String source;
+    private TokenBuffer tokens;
+    /**
+     * The statements in source order.
+     */
+    private final List<Statement> statements = new ArrayList<>();
+    /**
+     * Errors of the scanner in source order.
+     */
+    private List<Message> scanErrors = new ArrayList<>();
+    /**
+     * Statements with syntax errors.
+     */
+    private int failedStatements = 0;
+    private int rescannedTokens = 0;
+    private int reparsedStatements = 0;
+
+    IncrementalParser(String source) {
+        this.source = source;
+        this.tokens = new TokenBuffer(source, symbols, 0);
+        TokenBuffer scanned = new TokenBuffer(source, symbols, Math.max(16, source.length() / 4));
+        rescan(null, scanned, 0, 0, 0, 0);
+        tokens.splice(source, 0, 0, scanned, 0, 0);
+        reparse(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Replaces {@code removed} characters at {@code offset} by {@code inserted}.
+     */
+    void edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removed)
+                    + ") outside of a source of length " + source.length() + ".");
+        }
+        int offsetDelta = inserted.length() - removed;
+        int lineDelta = lines(inserted, 0, inserted.length()) - lines(source, offset, offset + removed);
+        source = new StringBuilder(source.length() + offsetDelta)
+                .append(source, 0, offset)
+                .append(inserted)
+                .append(source, offset + removed, source.length())
+                .toString();
+
+        // The scanner looks up to two characters past the end of a token, so a token ending right before the
+        // edit may change too.
+        int damaged = firstTokenEndingAfter(offset - 2);
+        int oldSize = tokens.size();
+        TokenBuffer scanned = new TokenBuffer(source, symbols, 16);
+        int synced = rescan(tokens, scanned, damaged, offset + inserted.length(), offsetDelta, lineDelta);
+        tokens.splice(source, damaged, synced, scanned, offsetDelta, lineDelta);
+        int tokenDelta = damaged + scanned.size() - synced;
+        reparse(oldSize - 1, damaged, synced + tokenDelta, tokenDelta, lineDelta);
+    }
+
+    String source() {
+        return source;
+    }
+
+    /**
+     * The tokens of the current source, the same buffer is updated by every edit.
+     */
+    TokenBuffer tokens() {
+        return tokens;
+    }
+
+    boolean hasErrors() {
+        return failedStatements > 0 || !scanErrors.isEmpty();
+    }
+
+    /**
+     * @return A view of the trees of the statements, which follows later edits, empty if there were errors
+     */
+    List<Expr> statements() {
+        if (hasErrors()) return Collections.emptyList();
+        List<Statement> statements = this.statements;
+        return new AbstractList<Expr>() {
+            @Override
+            public Expr get(int index) {
+                return statements.get(index).tree;
+            }
+
+            @Override
+            public int size() {
+                return statements.size();
+            }
+        };
+    }
+
+    /**
+     * The errors of the scanner, then the syntax errors, formatted like the command line prints them.
+     */
+    List<String> messages() {
+        List<String> messages = new ArrayList<>();
+        for (Message error : scanErrors) {
+            messages.add(error.format());
+        }
+        for (Statement statement : statements) {
+            for (Message error : statement.errors) {
+                messages.add(error.format());
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Tokens the last edit scanned again.
+     */
+    int rescannedTokens() {
+        return rescannedTokens;
+    }
+
+    /**
+     * Statements the last edit parsed again.
+     */
+    int reparsedStatements() {
+        return reparsedStatements;
+    }
+
+    /**
+     * Scans the new source from the end of the token before {@code damaged} until a token matches an old one.
+     * @param old The tokens before the edit, {@code null} to scan the whole source
+     * @param scanned Receives the new tokens
+     * @param editEnd End of the inserted text, tokens starting there or later can match the old ones
+     * @return Index of the first old token that is reused, the size of {@code old} if none is
+     */
+    private int rescan(TokenBuffer old, TokenBuffer scanned, int damaged, int editEnd, int offsetDelta,
+                       int lineDelta) {
+        int resume = damaged == 0 ? 0 : old.end(damaged - 1);
+        int line = damaged == 0 ? 1 : old.line(damaged - 1);
+        List<Message> errors = new ArrayList<>();
+        for (Message error : scanErrors) {
+            if (error.offset >= resume) break;
+            errors.add(error);
+        }
+        Collector collector = new Collector(errors);
+        Scanner scanner = new Scanner(source, resume, line, symbols, collector);
+        collector.scanner = scanner;
+
+        int candidate = damaged;
+        int oldSize = old == null ? 0 : old.size();
+        for (; ; ) {
+            TokenType type = scanner.scanNext();
+            int start = scanner.tokenStart();
+            int end = scanner.tokenEnd();
+            if (old != null && start >= editEnd) {
+                // Past the edit the text is the old one, a token scanned the same way leaves the scanner in the
+                // state it had after the old token.
+                int oldStart = start - offsetDelta;
+                while (candidate < oldSize && old.start(candidate) < oldStart) candidate++;
+                if (candidate < oldSize && old.start(candidate) == oldStart && old.end(candidate) == end - offsetDelta
+                        && old.type(candidate) == type) {
+                    break;
+                }
+            }
+            scanned.add(type, start, end, scanner.line());
+            if (type == EOF) {
+                candidate = oldSize;
+                break;
+            }
+        }
+        rescannedTokens = scanned.size();
+
+        if (candidate < oldSize) {
+            int syncedStart = old.start(candidate);
+            for (Message error : scanErrors) {
+                if (error.offset >= syncedStart) errors.add(error.shift(offsetDelta, lineDelta));
+            }
+        }
+        scanErrors = errors;
+        return candidate;
+    }
+
+    /**
+     * Parses the statements from the first one that reads a damaged token, until a statement starts at an old
+     * statement boundary past the re-scanned tokens.
+     * @param oldEof Index of the EOF token before the edit
+     * @param damaged Index of the first re-scanned token
+     * @param reused Index in the new tokens of the first reused old token
+     * @param tokenDelta How much the indexes of the reused tokens moved
+     * @param lineDelta How much the lines of the reused tokens moved
+     */
+    private void reparse(int oldEof, int damaged, int reused, int tokenDelta, int lineDelta) {
+        // A statement may look at the first token of the next one, to stop skipping after an error.
+        int kept = 0;
+        int high = statements.size();
+        while (kept < high) {
+            int middle = (kept + high) >>> 1;
+            if (next(statements, middle, oldEof) < damaged) {
+                kept = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        List<Statement> parsed = new ArrayList<>();
+        Parser parser = new Parser(tokens).seek(kept < statements.size() ? statements.get(kept).start : 0);
+        int candidate = kept;
+        int end = statements.size();
+        while (!parser.isAtEnd()) {
+            int position = parser.position();
+            if (position >= reused) {
+                int oldPosition = position - tokenDelta;
+                while (candidate < statements.size() && statements.get(candidate).start < oldPosition) candidate++;
+                if (candidate < statements.size() && statements.get(candidate).start == oldPosition) {
+                    end = candidate;
+                    break;
+                }
+            }
+            List<Message> errors = new ArrayList<>(0);
+            parser.withReporter(new Collector(errors));
+            parsed.add(new Statement(position, parser.statement(), errors));
+        }
+        reparsedStatements = parsed.size();
+
+        Reline reline = lineDelta == 0 ? null : new Reline(lineDelta);
+        for (Statement statement : statements.subList(end, statements.size())) {
+            statement.start += tokenDelta;
+            if (reline != null) statement.shiftLines(reline);
+        }
+        List<Statement> replaced = statements.subList(kept, end);
+        for (Statement statement : replaced) {
+            if (statement.tree == null) failedStatements--;
+        }
+        for (Statement statement : parsed) {
+            if (statement.tree == null) failedStatements++;
+        }
+        replaced.clear();
+        statements.addAll(kept, parsed);
+    }
+
+    /**
+     * Index of the first token of the statement after the one at {@code index}, the EOF token after the last one.
+     */
+    private static int next(List<Statement> statements, int index, int eof) {
+        return index + 1 < statements.size() ? statements.get(index + 1).start : eof;
+    }
+
+    /**
+     * Index of the first token ending after the offset, the EOF token ends after every offset of the source.
+     */
+    private int firstTokenEndingAfter(int offset) {
+        TokenBuffer old = tokens;
+        int low = 0;
+        int high = old.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (old.end(middle) > offset) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static int lines(String text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    private static class Statement {
+        /**
+         * Index of the first token.
+         */
+        int start;
+        /**
+         * {@code null} if the statement has errors.
+         */
+        Expr tree;
+        final List<Message> errors;
+
+        Statement(int start, Expr tree, List<Message> errors) {
+            this.start = start;
+            this.tree = tree;
+            this.errors = errors;
+        }
+
+        void shiftLines(Reline reline) {
+            if (tree != null) tree = tree.accept(reline);
+            errors.replaceAll(error -> error.shift(0, reline.lineDelta));
+        }
+    }
+
+    /**
+     * An error kept unformatted, so it can move to another line.
+     */
+    private static class Message {
+        /**
+         * Offset in the source of a scanner error, unused for syntax errors.
+         */
+        final int offset;
+        final int line;
+        final String where;
+        final String message;
+
+        Message(int offset, int line, String where, String message) {
+            this.offset = offset;
+            this.line = line;
+            this.where = where;
+            this.message = message;
+        }
+
+        Message shift(int offsetDelta, int lineDelta) {
+            return new Message(offset + offsetDelta, line + lineDelta, where, message);
+        }
+
+        String format() {
+            return ErrorReporter.format(line, where, message);
+        }
+    }
+
+    /**
+     * Collects the errors of one scan or one statement, with the offset of the scanner if there is one.
+     */
+    private static class Collector implements ErrorReporter {
+        private final List<Message> errors;
+        Scanner scanner;
+
+        Collector(List<Message> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public void report(int line, String where, String message) {
+            errors.add(new Message(scanner == null ? 0 : scanner.tokenStart(), line, where, message));
+        }
+    }
+
+    /**
+     * Copies a tree with the line of every operator and variable moved, the literals are shared.
+     */
+    private static class Reline implements Expr.Visitor<Expr> {
+        private final int lineDelta;
+
+        Reline(int lineDelta) {
+            this.lineDelta = lineDelta;
+        }
+
+        private Token shift(Token token) {
+            return new Token(token.type, token.lexeme, token.literal, token.line + lineDelta);
+        }
+
+        @Override
+        public Expr visitBinaryExpr(Expr.Binary expr) {
+            return new Expr.Binary(expr.left.accept(this), shift(expr.operator), expr.right.accept(this));
+        }
+
+        @Override
+        public Expr visitGroupingExpr(Expr.Grouping expr) {
+            return new Expr.Grouping(expr.expression.accept(this));
+        }
+
+        @Override
+        public Expr visitLiteralExpr(Expr.Literal expr) {
+            return expr;
+        }
+
+        @Override
+        public Expr visitUnaryExpr(Expr.Unary expr) {
+            return new Expr.Unary(shift(expr.operator), expr.right.accept(this));
+        }
+
+        @Override
+        public Expr visitVariableExpr(Expr.Variable expr) {
+            return new Expr.Variable(shift(expr.name));
+        }
+    }
+}
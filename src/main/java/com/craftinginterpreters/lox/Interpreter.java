@@ -0,0 +1,172 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tree-walking evaluator of {@link Expr}.
+ * <p>
+ * Values are represented by plain Java objects: {@code nil} is {@code null}, numbers are
+ * {@code Double}, booleans are {@code Boolean} and strings are {@code String}.
+ * Purely numeric trees are handed to {@link NumberEvaluator}, which does not box.
+ * Variables are looked up in the globals bound with {@link #define(String, Object)}.
+ */
+public class Interpreter implements Expr.Visitor<Object> {
+    private final Map<String, Object> globals = new HashMap<>();
+
+    /**
+     * Binds {@code name} for every later evaluation, replacing an earlier value.
+     */
+    void define(String name, Object value) {
+        globals.put(name, value);
+    }
+
+    private Object lookUp(Token name) {
+        Object value = globals.get(name.lexeme);
+        if (value == null && !globals.containsKey(name.lexeme)) return Operators.undefined(name);
+        return value;
+    }
+
+    /**
+     * Evaluates the expression and prints its value, runtime errors are reported to {@link Lox}.
+     */
+    void interpret(Expr expression) {
+        try {
+            Object value = evaluate(expression);
+            System.out.println(stringify(value));
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    /**
+     * Evaluates the whole tree, using the unboxed path when the tree is purely numeric. That is decided on the
+     * first evaluation and cached in the tree.
+     */
+    Object evaluate(Expr expression) {
+        if (NumberEvaluator.isNumeric(expression)) {
+            return NumberEvaluator.evaluate(expression);
+        }
+        return expression.accept(this);
+    }
+
+    /**
+     * Evaluates like {@link #evaluate(Expr)} on the {@link PostOrder} driver instead of recursion, so trees of
+     * any depth can be evaluated.
+     */
+    Object evaluateIterative(Expr expression) {
+        return PostOrder.walk(expression, iterative);
+    }
+
+    /**
+     * Evaluates a tree stored in an {@link ExprArena}, without recursion.
+     */
+    Object evaluate(ExprArena arena, int root) {
+        return arena.walk(root, arenaEvaluator(arena));
+    }
+
+    /**
+     * Evaluates the nodes of an arena in id order, the fastest traversal when the arena holds just one tree.
+     */
+    Object evaluateLinear(ExprArena arena) {
+        return arena.reduce(arenaEvaluator(arena));
+    }
+
+    private ExprArena.PostOrderVisitor<Object> arenaEvaluator(ExprArena arena) {
+        return new ExprArena.PostOrderVisitor<Object>() {
+            @Override
+            public Object visitBinaryExpr(int id, Object left, Object right) {
+                return Operators.binary(left, arena.binaryOperator(id), right);
+            }
+
+            @Override
+            public Object visitGroupingExpr(int id, Object expression) {
+                return expression;
+            }
+
+            @Override
+            public Object visitLiteralExpr(int id) {
+                return arena.literalValue(id);
+            }
+
+            @Override
+            public Object visitUnaryExpr(int id, Object right) {
+                return Operators.unary(arena.unaryOperator(id), right);
+            }
+
+            @Override
+            public Object visitVariableExpr(int id) {
+                return lookUp(arena.variableName(id));
+            }
+        };
+    }
+
+    private final PostOrder.Visitor<Object> iterative = new PostOrder.Visitor<Object>() {
+        @Override
+        public Object visitBinaryExpr(Expr.Binary expr, Object left, Object right) {
+            return Operators.binary(left, expr.operator, right);
+        }
+
+        @Override
+        public Object visitGroupingExpr(Expr.Grouping expr, Object expression) {
+            return expression;
+        }
+
+        @Override
+        public Object visitLiteralExpr(Expr.Literal expr) {
+            return expr.value;
+        }
+
+        @Override
+        public Object visitUnaryExpr(Expr.Unary expr, Object right) {
+            return Operators.unary(expr.operator, right);
+        }
+
+        @Override
+        public Object visitVariableExpr(Expr.Variable expr) {
+            return lookUp(expr.name);
+        }
+    };
+
+    @Override
+    public Object visitBinaryExpr(Expr.Binary expr) {
+        Object left = expr.left.accept(this);
+        Object right = expr.right.accept(this);
+        return Operators.binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Object visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Object visitLiteralExpr(Expr.Literal expr) {
+        return expr.value;
+    }
+
+    @Override
+    public Object visitUnaryExpr(Expr.Unary expr) {
+        return Operators.unary(expr.operator, expr.right.accept(this));
+    }
+
+    @Override
+    public Object visitVariableExpr(Expr.Variable expr) {
+        return lookUp(expr.name);
+    }
+
+    /**
+     * {@code false} and {@code nil} are falsey, everything else is truthy.
+     */
+    static String stringify(Object object) {
+        if (object == null) return "nil";
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+        return object.toString();
+    }
+}
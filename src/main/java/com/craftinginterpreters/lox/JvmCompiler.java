@@ -0,0 +1,363 @@
+package com.craftinginterpreters.lox;
+
+import com.craftinginterpreters.lox.ClassFileWriter.Code;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.craftinginterpreters.lox.ClassFileWriter.*;
+import static com.craftinginterpreters.lox.ClassFileWriter.Code.*;
+
+/**
+ * Compiles an expression tree to a JVM class implementing {@link CompiledExpr}, so HotSpot can inline
+ * and register-allocate the whole expression.
+ * <p>
+ * Purely numeric subtrees (see {@link NumberEvaluator}) become plain {@code double} arithmetic. Everything
+ * else works on boxed values like {@link Interpreter} and calls the helpers of {@link Operators}, which do
+ * the same type checks and throw the same {@link RuntimeError}s. The operator tokens those errors need are
+ * handed to the class as class data. The generated code has no branches, so it needs no stack map frames.
+ * <p>
+ * Large trees are split: a subtree grows into a method of its own once it holds more than
+ * {@link #METHOD_NODES} nodes, which keeps every method well below the size HotSpot refuses to JIT.
+ * The class is defined as a hidden class, it is unloaded once the {@link CompiledExpr} is unreachable.
+ */
+class JvmCompiler {
+    /**
+     * Node budget of one generated method.
+     */
+    static final int METHOD_NODES = 256;
+
+    private static final String CLASS_NAME = "com/craftinginterpreters/lox/Compiled";
+    private static final String OPERATORS = "com/craftinginterpreters/lox/Operators";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String TOKEN = "com/craftinginterpreters/lox/Token";
+    private static final String CONSTANTS = "K";
+    private static final String CONSTANTS_TYPE = "[Ljava/lang/Object;";
+    private static final String OBJECT_RESULT = "()Ljava/lang/Object;";
+    private static final String DOUBLE_RESULT = "()D";
+    private static final String BINARY = "(Ljava/lang/Object;Ljava/lang/Object;Lcom/craftinginterpreters/lox/Token;)Ljava/lang/Object;";
+    private static final String NUMBER_COMPARISON = "(DD)Ljava/lang/Object;";
+    private static final String EQUALITY = "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * @throws IllegalStateException When the tree doesn't fit in a class file, it can still be interpreted
+     * @throws RuntimeError When the tree has a variable, see {@link Operators#unsupportedVariable(Token)}
+     */
+    CompiledExpr compile(Expr expr) {
+        Generator generator = new Generator(expr);
+        byte[] bytes = generator.generate();
+        try {
+            MethodHandles.Lookup lookup = LOOKUP.defineHiddenClassWithClassData(
+                    bytes, generator.constants.toArray(), true);
+            return (CompiledExpr) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (RuntimeException | Error error) {
+            throw error;
+        } catch (Throwable error) {
+            throw new IllegalStateException("Can't define the compiled class.", error);
+        }
+    }
+
+    /**
+     * Generates the class of one tree.
+     */
+    private static class Generator {
+        final ClassFileWriter writer = new ClassFileWriter(CLASS_NAME, OBJECT, "com/craftinginterpreters/lox/CompiledExpr");
+        /**
+         * Class data, the operator tokens loaded by index.
+         */
+        final List<Object> constants = new ArrayList<>();
+        final Expr root;
+        /**
+         * Whether every node is numeric, filled by {@link #analyze(Expr)}.
+         */
+        final Map<Expr, Boolean> numeric = new IdentityHashMap<>();
+        /**
+         * The nodes that are the body of a method of their own and the method name, filled by {@link #analyze(Expr)}.
+         * Shared subtrees of hash-consed trees get one method.
+         */
+        final Map<Expr, String> methods = new IdentityHashMap<>();
+        /**
+         * Method roots whose method isn't generated yet.
+         */
+        final Deque<Expr> pending = new ArrayDeque<>();
+        /**
+         * Method roots whose method is generated or pending.
+         */
+        final Set<Expr> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Generator(Expr root) {
+            this.root = root;
+        }
+
+        byte[] generate() {
+            analyze(root);
+            writer.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, CONSTANTS, CONSTANTS_TYPE);
+
+            // static { K = MethodHandles.classData(MethodHandles.lookup(), "_", Object[].class); }
+            Code init = writer.method(ACC_STATIC, "<clinit>", "()V");
+            init.invokeStatic("java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;")
+                    .pushString("_")
+                    .pushClass(CONSTANTS_TYPE)
+                    .invokeStatic("java/lang/invoke/MethodHandles", "classData",
+                            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;")
+                    .checkCast(CONSTANTS_TYPE)
+                    .putStatic(CLASS_NAME, CONSTANTS, CONSTANTS_TYPE)
+                    .op(RETURN, 0)
+                    .end(0);
+
+            Code constructor = writer.method(ACC_PUBLIC, "<init>", "()V");
+            constructor.op(ALOAD_0, 1)
+                    .invokeSpecial(OBJECT, "<init>", "()V")
+                    .op(RETURN, 0)
+                    .end(1);
+
+            Code evaluate = writer.method(ACC_PUBLIC, "evaluate", OBJECT_RESULT);
+            emitObject(evaluate, root, root);
+            evaluate.op(ARETURN, -1).end(1);
+
+            while (!pending.isEmpty()) {
+                Expr body = pending.pop();
+                boolean isNumeric = numeric.get(body);
+                Code code = writer.method(ACC_PRIVATE | ACC_STATIC, methods.get(body),
+                        isNumeric ? DOUBLE_RESULT : OBJECT_RESULT);
+                if (isNumeric) {
+                    emitDouble(code, body, body);
+                    code.op(DRETURN, -2);
+                } else {
+                    emitObject(code, body, body);
+                    code.op(ARETURN, -1);
+                }
+                code.end(0);
+            }
+            return writer.toByteArray();
+        }
+
+        /**
+         * Finds the numeric subtrees and splits the tree into methods.
+         * @return How many nodes the subtree adds to the method of its parent
+         */
+        private int analyze(Expr expr) {
+            if (numeric.containsKey(expr)) {
+                // Shared subtree.
+                return methods.containsKey(expr) ? 1 : weight(expr);
+            }
+            int weight = 1;
+            boolean isNumeric;
+            if (expr instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) expr;
+                weight += analyze(binary.left) + analyze(binary.right);
+                switch (binary.operator.type) {
+                    case PLUS:
+                    case MINUS:
+                    case STAR:
+                    case SLASH:
+                        isNumeric = numeric.get(binary.left) && numeric.get(binary.right);
+                        break;
+                    default:
+                        isNumeric = false;
+                }
+            } else if (expr instanceof Expr.Grouping) {
+                Expr inner = ((Expr.Grouping) expr).expression;
+                weight += analyze(inner);
+                isNumeric = numeric.get(inner);
+            } else if (expr instanceof Expr.Unary) {
+                Expr.Unary unary = (Expr.Unary) expr;
+                weight += analyze(unary.right);
+                isNumeric = unary.operator.type == TokenType.MINUS && numeric.get(unary.right);
+            } else if (expr instanceof Expr.Literal) {
+                isNumeric = ((Expr.Literal) expr).value instanceof Double;
+            } else if (expr instanceof Expr.Variable) {
+                throw Operators.unsupportedVariable(((Expr.Variable) expr).name);
+            } else {
+                throw new IllegalArgumentException("Unknown node " + expr.getClass().getSimpleName());
+            }
+            numeric.put(expr, isNumeric);
+            if (weight > METHOD_NODES && expr != root) {
+                methods.put(expr, "e" + methods.size());
+                return 1;
+            }
+            return weight;
+        }
+
+        /**
+         * Node count of a subtree that isn't split, only needed for shared subtrees.
+         */
+        private int weight(Expr expr) {
+            if (methods.containsKey(expr)) return 1;
+            if (expr instanceof Expr.Binary) {
+                return 1 + weight(((Expr.Binary) expr).left) + weight(((Expr.Binary) expr).right);
+            }
+            if (expr instanceof Expr.Grouping) return 1 + weight(((Expr.Grouping) expr).expression);
+            if (expr instanceof Expr.Unary) return 1 + weight(((Expr.Unary) expr).right);
+            return 1;
+        }
+
+        /**
+         * Calls the method of a split subtree.
+         * @return Whether the subtree has a method of its own
+         */
+        private boolean emitCall(Code code, Expr expr, Expr body) {
+            String method = methods.get(expr);
+            if (method == null || expr == body) return false;
+            // Shared subtrees are reached more than once, but get one method.
+            if (queued.add(expr)) pending.push(expr);
+            code.invokeStatic(CLASS_NAME, method, numeric.get(expr) ? DOUBLE_RESULT : OBJECT_RESULT);
+            return true;
+        }
+
+        /**
+         * Emits code leaving the boxed value of the expression on the stack.
+         * @param body The root of the method being generated
+         */
+        private void emitObject(Code code, Expr expr, Expr body) {
+            if (numeric.get(expr)) {
+                emitDouble(code, expr, body);
+                code.invokeStatic("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+                return;
+            }
+            if (emitCall(code, expr, body)) return;
+
+            if (expr instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) expr;
+                TokenType type = binary.operator.type;
+                if (type == TokenType.EQUAL_EQUAL || type == TokenType.BANG_EQUAL) {
+                    String helper = type == TokenType.EQUAL_EQUAL ? "equal" : "notEqual";
+                    if (numeric.get(binary.left) && numeric.get(binary.right)) {
+                        emitDouble(code, binary.left, body);
+                        emitDouble(code, binary.right, body);
+                        code.invokeStatic(OPERATORS, helper, NUMBER_COMPARISON);
+                    } else {
+                        emitObject(code, binary.left, body);
+                        emitObject(code, binary.right, body);
+                        code.invokeStatic(OPERATORS, helper, EQUALITY);
+                    }
+                    return;
+                }
+                String helper = helperName(type);
+                if (isComparison(type) && numeric.get(binary.left) && numeric.get(binary.right)) {
+                    // Both sides are numbers, so the comparison can't fail.
+                    emitDouble(code, binary.left, body);
+                    emitDouble(code, binary.right, body);
+                    code.invokeStatic(OPERATORS, helper, NUMBER_COMPARISON);
+                    return;
+                }
+                emitObject(code, binary.left, body);
+                emitObject(code, binary.right, body);
+                emitConstant(code, binary.operator);
+                code.invokeStatic(OPERATORS, helper, BINARY);
+            } else if (expr instanceof Expr.Grouping) {
+                emitObject(code, ((Expr.Grouping) expr).expression, body);
+            } else if (expr instanceof Expr.Unary) {
+                Expr.Unary unary = (Expr.Unary) expr;
+                emitObject(code, unary.right, body);
+                if (unary.operator.type == TokenType.BANG) {
+                    code.invokeStatic(OPERATORS, "not", "(Ljava/lang/Object;)Ljava/lang/Object;");
+                } else {
+                    emitConstant(code, unary.operator);
+                    code.invokeStatic(OPERATORS, "negate",
+                            "(Ljava/lang/Object;Lcom/craftinginterpreters/lox/Token;)Ljava/lang/Object;");
+                }
+            } else {
+                Object value = ((Expr.Literal) expr).value;
+                if (value == null) {
+                    code.op(ACONST_NULL, 1);
+                } else if (value instanceof Boolean) {
+                    code.getStatic("java/lang/Boolean", (Boolean) value ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+                } else {
+                    code.pushString((String) value);
+                }
+            }
+        }
+
+        /**
+         * Emits code leaving the value of a numeric expression on the stack as a {@code double}.
+         */
+        private void emitDouble(Code code, Expr expr, Expr body) {
+            if (emitCall(code, expr, body)) return;
+            if (expr instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) expr;
+                emitDouble(code, binary.left, body);
+                emitDouble(code, binary.right, body);
+                switch (binary.operator.type) {
+                    case PLUS:
+                        code.op(DADD, -2);
+                        break;
+                    case MINUS:
+                        code.op(DSUB, -2);
+                        break;
+                    case STAR:
+                        code.op(DMUL, -2);
+                        break;
+                    default:
+                        code.op(DDIV, -2);
+                        break;
+                }
+            } else if (expr instanceof Expr.Grouping) {
+                emitDouble(code, ((Expr.Grouping) expr).expression, body);
+            } else if (expr instanceof Expr.Unary) {
+                emitDouble(code, ((Expr.Unary) expr).right, body);
+                code.op(DNEG, 0);
+            } else {
+                code.pushDouble((Double) ((Expr.Literal) expr).value);
+            }
+        }
+
+        /**
+         * Loads {@code K[index]} of the class data.
+         */
+        private void emitConstant(Code code, Token token) {
+            int index = constants.size();
+            constants.add(token);
+            code.getStatic(CLASS_NAME, CONSTANTS, CONSTANTS_TYPE)
+                    .pushInt(index)
+                    .op(AALOAD, -1)
+                    .checkCast(TOKEN);
+        }
+
+        private static boolean isComparison(TokenType type) {
+            switch (type) {
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static String helperName(TokenType type) {
+            switch (type) {
+                case PLUS:
+                    return "add";
+                case MINUS:
+                    return "subtract";
+                case STAR:
+                    return "multiply";
+                case SLASH:
+                    return "divide";
+                case GREATER:
+                    return "greater";
+                case GREATER_EQUAL:
+                    return "greaterEqual";
+                case LESS:
+                    return "less";
+                case LESS_EQUAL:
+                    return "lessEqual";
+                default:
+                    throw new IllegalArgumentException("Unknown operator " + type);
+            }
+        }
+    }
+}
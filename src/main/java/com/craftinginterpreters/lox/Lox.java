@@ -9,26 +9,176 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class Lox {
+    private static final Interpreter interpreter = new Interpreter();
+    private static final BytecodeCompiler compiler = new BytecodeCompiler();
+    private static final VM vm = new VM();
+    private static final TieredExecutor tiered = new TieredExecutor();
+    /**
+     * Runs the expressions on the bytecode {@link VM} instead of the tree-walking {@link Interpreter}.
+     */
+    private static boolean useVm = false;
+    /**
+     * Runs the expressions on the {@link TieredExecutor}, which compiles hot ones to JVM bytecode.
+     */
+    private static boolean useTiered = false;
+    /**
+     * Runs the expressions as self-specializing {@link Node} trees.
+     */
+    private static boolean useNodes = false;
+    /**
+     * Prints how many nodes every optimization pass removed.
+     */
+    private static boolean printPasses = false;
+    /**
+     * Caches the parsed trees of script files on disk, {@code null} when disabled.
+     */
+    private static CompilationCache cache = null;
+    /**
+     * Scans script files straight from a memory mapping and runs them one statement at a time. It keeps the heap
+     * small for huge files but scans ordinary code slower than {@link Scanner}, only input made mostly of
+     * comments, indentation or long identifiers scans faster (see {@code SkippingBenchmark}). The file is
+     * scanned twice, once for the errors and once to run it. Can't be combined with {@code --cache}, whose
+     * entries hold the trees of the whole file.
+     */
+    private static boolean mapped = false;
+    /**
+     * Scans, parses and optimizes scripts, REPL lines and {@code --batch} files. {@code --metrics} replaces it
+     * with one that measures every phase.
+     */
+    private static LoxCompiler loxCompiler = new LoxCompiler();
+    /**
+     * Durations of the execute phase, {@code null} unless {@code --metrics} is given.
+     */
+    private static Metrics.Histogram executeNanos = null;
+    /**
+     * Threads of the {@code --batch} mode.
+     */
+    private static int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Reports to stderr and the exit status, the reporter of every compilation that isn't given its own.
+     */
+    static final ErrorReporter REPORTER = new ErrorReporter() {
+        @Override
+        public void report(int line, String where, String message) {
+            Lox.report(line, where, message);
+        }
+    };
     private static boolean hadError = false;
+    private static boolean hadRuntimeError = false;
 
     public static void main(String[] args) throws IOException {
         Path currentRelativePath = Paths.get("");
         String s = currentRelativePath.toAbsolutePath().toString();
         System.out.println("Current absolute path is: " + s);
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            switch (args[first]) {
+                case "--vm":
+                    useVm = true;
+                    break;
+                case "--tiered":
+                    useTiered = true;
+                    break;
+                case "--nodes":
+                    useNodes = true;
+                    break;
+                case "--passes":
+                    printPasses = true;
+                    break;
+                case "--threads":
+                    if (++first == args.length) usage();
+                    threads = Integer.parseInt(args[first]);
+                    break;
+                case "--batch":
+                    if (++first == args.length) usage();
+                    batch(Paths.get(args[first]));
+                    return;
+                case "--serve":
+                    if (++first == args.length) usage();
+                    serve(Integer.parseInt(args[first]));
+                    return;
+                case "--metrics":
+                    enableMetrics();
+                    break;
+                case "--mapped":
+                    mapped = true;
+                    break;
+                case "--cache":
+                    cache = new CompilationCache(CompilationCache.defaultDirectory(), CompilationCache.DEFAULT_MAX_BYTES);
+                    break;
+                default:
+                    usage();
+            }
+        }
+        if (mapped && cache != null) {
+            System.err.println("--mapped and --cache can't be combined.");
+            usage();
+        } else if (args.length - first > 1) {
+            usage();
+        } else if (args.length - first == 1) {
+            runFile(args[first]);
 
         } else {
             runPrompt();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: jlox [--vm | --tiered | --nodes] [--passes] [--cache | --mapped] [--metrics] [script]");
+        System.out.println("       jlox --serve <port>");
+        System.out.println("       jlox [--threads n] [--metrics] --batch <directory>");
+        System.exit(64);
+    }
+
+    /**
+     * Measures every phase from now on and prints the metrics when the process exits, whatever the exit status.
+     */
+    private static void enableMetrics() {
+        Metrics registry = new Metrics();
+        loxCompiler = new LoxCompiler(false, registry);
+        executeNanos = registry.histogram("execute.nanos");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(registry.report()), "lox-metrics"));
+    }
+
+    /**
+     * Serves interactive sessions on the local port until the process is killed.
+     */
+    private static void serve(int port) throws IOException {
+        ReplServer server = new ReplServer(port).start();
+        System.out.println("Listening on localhost:" + server.port());
+        try {
+            server.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Scans and parses every script under the directory in parallel, prints the errors and the throughput.
+     */
+    private static void batch(Path root) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        BatchCompiler.Summary summary;
+        try {
+            summary = new BatchCompiler(loxCompiler, executor).compileTree(root);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            executor.shutdown();
+        }
+        for (String error : summary.errors()) {
+            System.err.println(error);
+        }
+        System.out.print(summary.report());
+        if (summary.failedFiles() > 0) System.exit(65);
+    }
+
     private static void runPrompt() throws IOException {
         //TODO REPL cannot process multiple strings
         InputStreamReader input = new InputStreamReader(System.in);
@@ -43,6 +193,7 @@ public class Lox {
             }
             run(line);
             hadError = false;
+            hadRuntimeError = false;
 
 
        }
@@ -50,44 +201,153 @@ public class Lox {
    }
 
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        if (mapped) {
+            runMapped(Paths.get(path));
+        } else {
+            runBytes(Files.readAllBytes(Paths.get(path)));
+        }
 
         if (hadError) {
             System.exit(65);
         }
+        if (hadRuntimeError) {
+            System.exit(70);
+        }
 
     }
 
+    private static void runBytes(byte[] bytes) {
+        if (cache == null) {
+            run(new String(bytes, Charset.defaultCharset()));
+        } else {
+            // A warm start skips scanning and parsing.
+            List<Expr> statements = cache.load(bytes);
+            if (statements == null) {
+                statements = parse(new String(bytes, Charset.defaultCharset()));
+                if (statements != null) cache.store(bytes, statements);
+            }
+            if (statements != null) execute(statements);
+        }
+    }
+
+    /**
+     * Runs a script of any size in a fixed amount of heap: the file is scanned from a memory mapping by a
+     * {@link Utf8Scanner} and every statement is dropped once it ran. A first pass only reports the errors, so
+     * like {@link #run(String)} nothing runs if there are any; they are reported in source order instead of
+     * the scan errors first.
+     */
+    private static void runMapped(Path path) throws IOException {
+        Parser check = new Parser(Utf8Scanner.map(path, null, REPORTER));
+        while (!check.isAtEnd()) check.statement();
+        if (hadError) return;
+
+        Parser parser = new Parser(Utf8Scanner.map(path, null, REPORTER));
+        // The statements are parsed as they run, so here the execute phase includes the second parse.
+        PipelineEvents.Execute event = new PipelineEvents.Execute();
+        event.begin();
+        long start = executeNanos != null ? System.nanoTime() : 0;
+        int executed = 0;
+        int nodes = 0;
+        while (!parser.isAtEnd() && !hadRuntimeError) {
+            Expr statement = parser.statement();
+            if (event.isEnabled()) nodes += PassManager.countNodes(statement);
+            execute(statement);
+            executed++;
+        }
+        if (executeNanos != null) executeNanos.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.statements = executed;
+            event.nodes = nodes;
+            event.commit();
+        }
+    }
+
 
     private static void run(String source) {
-        Scanner scanner = new Scanner(source);
+        List<Expr> statements = parse(source);
+        if (statements != null) execute(statements);
+    }
 
+    /**
+     * @return The parsed statements, or {@code null} if there were errors
+     */
+    private static List<Expr> parse(String source) {
+        CompileResult result = loxCompiler.compile(source);
+        for (String message : result.messages()) {
+            System.err.println(message);
+        }
+        if (result.hasErrors()) {
+            hadError = true;
+            return null;
+        }
+        return result.statements();
+    }
 
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        Expr expression=parser.parse();
-        if(hadError) return;
-        System.out.println(new AstPrinter().print(expression));
+    /**
+     * Runs the statements in order, up to the first runtime error.
+     */
+    private static void execute(List<Expr> statements) {
+        PipelineEvents.Execute event = new PipelineEvents.Execute();
+        event.begin();
+        long start = executeNanos != null ? System.nanoTime() : 0;
+        int executed = 0;
+        for (Expr statement : statements) {
+            execute(statement);
+            executed++;
+            if (hadRuntimeError) break;
+        }
+        if (executeNanos != null) executeNanos.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.statements = executed;
+            event.nodes = PipelineEvents.countNodes(statements.subList(0, executed));
+            event.commit();
+        }
+    }
+
+    private static void execute(Expr expression) {
+        PassManager passes = PassManager.standard();
+        expression = passes.run(expression);
+        if (printPasses) {
+            System.err.print(passes.report());
+        }
+        if (useVm || useNodes) {
+            try {
+                if (useVm) {
+                    vm.interpret(compiler.compile(expression));
+                } else {
+                    Node.build(expression).interpret();
+                }
+            } catch (RuntimeError error) {
+                // A variable, these backends can't bind one.
+                runtimeError(error);
+            }
+        } else if (useTiered) {
+            tiered.interpret(expression);
+        } else {
+            interpreter.interpret(expression);
+        }
 //        for (Token token : tokens) {
 //            System.out.println(token);
 //        }
     }
 
+    static void runtimeError(RuntimeError error) {
+        System.err.println(ErrorReporter.format(error));
+        hadRuntimeError = true;
+    }
+
     static void error(int line, String message) {
         report(line, "", message);
     }
 
     private static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
+        System.err.println(ErrorReporter.format(line, where, message));
         hadError = true;
     }
 
     public static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '"+token.lexeme+"'",message);
-        }
+        REPORTER.error(token, message);
     }
 }
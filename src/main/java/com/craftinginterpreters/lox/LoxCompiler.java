@@ -0,0 +1,139 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reentrant entry point that scans, parses and optionally optimizes a program.
+ * <p>
+ * The parser pulls the tokens from the scanner one at a time, so the tokens of the whole source are never held.
+ * Only when the phases are measured, by a {@link Metrics} registry or a recording of the {@link PipelineEvents},
+ * is the source scanned into a {@link TokenBuffer} before it is parsed, so the two phases can be told apart. Then
+ * the errors of the scanner are reported before the syntax errors.
+ * <p>
+ * Every compilation collects its errors in its own {@link Diagnostics} and never touches the static state of
+ * {@link Lox}, so one instance can be used by any number of threads at once.
+ */
+final class LoxCompiler {
+    private final boolean optimize;
+    /**
+     * Instruments of the registry given to the constructor, {@code null} when nothing is measured.
+     */
+    private final LongAdder sourceChars;
+    private final LongAdder tokenCount;
+    private final LongAdder statementCount;
+    private final LongAdder nodeCount;
+    private final LongAdder errorCount;
+    private final Metrics.Histogram scanNanos;
+    private final Metrics.Histogram parseNanos;
+
+    /**
+     * Compiles without running the optimization passes.
+     */
+    LoxCompiler() {
+        this(false);
+    }
+
+    /**
+     * @param optimize Whether to run the {@link PassManager#standard()} passes on the tree
+     */
+    LoxCompiler(boolean optimize) {
+        this(optimize, null);
+    }
+
+    /**
+     * @param metrics Receives the sizes and durations of the scan and parse phases, {@code null} to not measure
+     */
+    LoxCompiler(boolean optimize, Metrics metrics) {
+        this.optimize = optimize;
+        boolean measure = metrics != null;
+        sourceChars = measure ? metrics.counter("scan.chars") : null;
+        tokenCount = measure ? metrics.counter("scan.tokens") : null;
+        statementCount = measure ? metrics.counter("parse.statements") : null;
+        nodeCount = measure ? metrics.counter("parse.nodes") : null;
+        errorCount = measure ? metrics.counter("parse.errors") : null;
+        scanNanos = measure ? metrics.histogram("scan.nanos") : null;
+        parseNanos = measure ? metrics.histogram("parse.nanos") : null;
+    }
+
+    CompileResult compile(String source) {
+        return compile(source, new SymbolTable());
+    }
+
+    /**
+     * Compiles with a symbol table shared with other compilations of the same thread, which keeps every symbol
+     * they intern.
+     */
+    CompileResult compile(String source, SymbolTable symbols) {
+        Diagnostics diagnostics = new Diagnostics();
+        PipelineEvents.Scan scan = new PipelineEvents.Scan();
+        PipelineEvents.Parse parse = new PipelineEvents.Parse();
+        List<Expr> statements;
+        if (scanNanos != null || scan.isEnabled() || parse.isEnabled()) {
+            statements = compileMeasured(source, symbols, diagnostics, scan, parse);
+        } else {
+            statements = new Parser(new Scanner(source, symbols, diagnostics)).parseProgram();
+        }
+        if (optimize && !diagnostics.hadError()) {
+            statements.replaceAll(statement -> PassManager.standard().run(statement));
+        }
+        return new CompileResult(statements, diagnostics);
+    }
+
+    /**
+     * Scans and then parses, recording the events and the instruments of each phase.
+     */
+    private List<Expr> compileMeasured(String source, SymbolTable symbols, Diagnostics diagnostics,
+                                       PipelineEvents.Scan scan, PipelineEvents.Parse parse) {
+        boolean measure = scanNanos != null;
+        scan.begin();
+        long start = measure ? System.nanoTime() : 0;
+        TokenBuffer tokens = new Scanner(source, symbols, diagnostics).scanTokenBuffer();
+        long scanned = measure ? System.nanoTime() : 0;
+        scan.end();
+        if (scan.shouldCommit()) {
+            scan.sourceSize = source.length();
+            scan.tokens = tokens.size();
+            scan.commit();
+        }
+
+        parse.begin();
+        long parseStart = measure ? System.nanoTime() : 0;
+        Parser parser = new Parser(tokens).withReporter(diagnostics);
+        List<Expr> statements = parser.parseProgram();
+        long parsed = measure ? System.nanoTime() : 0;
+        parse.end();
+        boolean commit = parse.shouldCommit();
+        if (commit || measure) {
+            int nodes = PipelineEvents.countNodes(statements);
+            if (commit) {
+                parse.tokens = tokens.size();
+                parse.statements = statements.size();
+                parse.nodes = nodes;
+                parse.errors = parser.errorCount();
+                parse.commit();
+            }
+            if (measure) {
+                sourceChars.add(source.length());
+                tokenCount.add(tokens.size());
+                statementCount.add(statements.size());
+                nodeCount.add(nodes);
+                errorCount.add(parser.errorCount());
+                scanNanos.record(scanned - start);
+                parseNanos.record(parsed - parseStart);
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Compiles a file in the platform charset, like the command line reads scripts.
+     */
+    CompileResult compile(Path path) throws IOException {
+        return compile(new String(Files.readAllBytes(path), Charset.defaultCharset()));
+    }
+}
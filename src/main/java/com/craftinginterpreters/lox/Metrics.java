@@ -0,0 +1,96 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of named counters and histograms, printed by {@code jlox --metrics} when the process exits.
+ * <p>
+ * Lock-free, compilations on any number of threads can record into one registry. Instruments are looked up
+ * once and kept by their users, recording is an add or two. Without {@code --metrics} there is no registry and
+ * nothing is measured.
+ */
+final class Metrics {
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Every counter and histogram, sorted by name.
+     */
+    String report() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            builder.append(String.format("%-20s %d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            builder.append(String.format("%-20s count %d  mean %.0f  p50 %d  p90 %d  p99 %d  max %d%n",
+                    entry.getKey(), histogram.count(), histogram.mean(), histogram.percentile(50),
+                    histogram.percentile(90), histogram.percentile(99), histogram.max()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Distribution of non-negative values in power-of-two buckets, so percentiles are upper bounds within a
+     * factor of two.
+     */
+    static final class Histogram {
+        /**
+         * Bucket {@code i} counts the values of {@code i} significant bits, {@code [2^(i-1), 2^i)}, bucket 0
+         * the zeros.
+         */
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) sum.sum() / count;
+        }
+
+        /**
+         * Upper bound of the bucket holding the percentile, at most the largest value recorded.
+         */
+        long percentile(double percentile) {
+            long total = count();
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return i == 0 ? 0 : Math.min(max(), i == 64 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+            return max();
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Executable tree built from an {@link Expr}, whose operator nodes specialize themselves on the operand
+ * types they see.
+ * <p>
+ * A {@code Binary} or {@code Unary} expression starts as an uninitialized node. Its first execution looks at
+ * the operand values and replaces it in its parent with a node for those types, for example
+ * {@link NumberBinary} for numbers or {@link StringConcat} for strings. Number nodes pass primitive doubles to
+ * each other through {@link #executeDouble()}, so a stable numeric subtree runs without type checks or boxing.
+ * When an operand no longer has the expected type, the node deoptimizes: it replaces itself with the generic
+ * node, which behaves exactly like {@link Interpreter}, and never specializes again.
+ * <p>
+ * Groupings are dropped when the tree is built. Nodes rewrite the tree while executing, so a tree must not be
+ * executed by more than one thread at a time.
+ */
+abstract class Node {
+    Node parent;
+
+    abstract Object execute();
+
+    /**
+     * Executes a node expected to produce a number.
+     * @throws UnexpectedResult When the value isn't a number, with the value
+     */
+    double executeDouble() throws UnexpectedResult {
+        return expectDouble(execute());
+    }
+
+    /**
+     * Replaces this node in its parent.
+     * @return The new node
+     */
+    final <T extends Node> T replace(T node) {
+        parent.replaceChild(this, node);
+        node.parent = parent;
+        return node;
+    }
+
+    void replaceChild(Node child, Node replacement) {
+        throw new IllegalStateException(getClass().getSimpleName() + " has no children.");
+    }
+
+    final Node adopt(Node child) {
+        child.parent = this;
+        return child;
+    }
+
+    static double expectDouble(Object value) throws UnexpectedResult {
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResult(value);
+    }
+
+    /**
+     * Builds the executable tree of an expression.
+     * @throws RuntimeError When the tree has a variable, see {@link Operators#unsupportedVariable(Token)}
+     */
+    static Root build(Expr expr) {
+        return new Root(expr.accept(new Builder()));
+    }
+
+    /**
+     * The value didn't have the type a specialized node expected. Thrown on every deoptimization, so it
+     * doesn't fill in a stack trace.
+     */
+    static final class UnexpectedResult extends Exception {
+        final Object value;
+
+        UnexpectedResult(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    private static class Builder implements Expr.Visitor<Node> {
+        @Override
+        public Node visitBinaryExpr(Expr.Binary expr) {
+            return new UninitializedBinary(expr.left.accept(this), expr.operator, expr.right.accept(this));
+        }
+
+        @Override
+        public Node visitGroupingExpr(Expr.Grouping expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Node visitLiteralExpr(Expr.Literal expr) {
+            if (expr.value instanceof Double) return new NumberConstant((Double) expr.value);
+            return new Constant(expr.value);
+        }
+
+        @Override
+        public Node visitUnaryExpr(Expr.Unary expr) {
+            return new UninitializedUnary(expr.operator, expr.right.accept(this));
+        }
+
+        @Override
+        public Node visitVariableExpr(Expr.Variable expr) {
+            throw Operators.unsupportedVariable(expr.name);
+        }
+    }
+
+    /**
+     * Holds the tree, so the top node can replace itself too.
+     */
+    static final class Root extends Node {
+        private Node body;
+
+        Root(Node body) {
+            this.body = adopt(body);
+        }
+
+        @Override
+        Object execute() {
+            return body.execute();
+        }
+
+        /**
+         * Executes the tree and prints its value, runtime errors are reported to {@link Lox}.
+         */
+        void interpret() {
+            try {
+                System.out.println(Interpreter.stringify(execute()));
+            } catch (RuntimeError error) {
+                Lox.runtimeError(error);
+            }
+        }
+
+        Node body() {
+            return body;
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            body = replacement;
+        }
+    }
+
+    static final class Constant extends Node {
+        final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+    }
+
+    static final class NumberConstant extends Node {
+        final double value;
+        /**
+         * The literal's own box, so {@link #execute()} doesn't allocate.
+         */
+        final Double boxed;
+
+        NumberConstant(Double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute() {
+            return boxed;
+        }
+
+        @Override
+        double executeDouble() {
+            return value;
+        }
+    }
+
+    abstract static class UnaryNode extends Node {
+        final Token operator;
+        Node right;
+
+        UnaryNode(Token operator, Node right) {
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        /**
+         * The result for an already evaluated operand.
+         */
+        abstract Object apply(Object value);
+
+        final Object deoptimize(Object value) {
+            return replace(new GenericUnary(operator, right)).apply(value);
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            right = replacement;
+        }
+    }
+
+    static final class UninitializedUnary extends UnaryNode {
+        UninitializedUnary(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            return apply(right.execute());
+        }
+
+        @Override
+        Object apply(Object value) {
+            UnaryNode specialized;
+            if (operator.type == TokenType.BANG) {
+                specialized = new Not(operator, right);
+            } else if (value instanceof Double) {
+                specialized = new NegateNumber(operator, right);
+            } else {
+                specialized = new GenericUnary(operator, right);
+            }
+            return replace(specialized).apply(value);
+        }
+    }
+
+    /**
+     * {@code !} accepts any value, there is nothing to specialize on.
+     */
+    static final class Not extends UnaryNode {
+        Not(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            return apply(right.execute());
+        }
+
+        @Override
+        Object apply(Object value) {
+            return Operators.not(value);
+        }
+    }
+
+    static final class NegateNumber extends UnaryNode {
+        NegateNumber(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult result) {
+                return result.value;
+            }
+        }
+
+        @Override
+        double executeDouble() throws UnexpectedResult {
+            double value;
+            try {
+                value = right.executeDouble();
+            } catch (UnexpectedResult result) {
+                return expectDouble(deoptimize(result.value));
+            }
+            return -value;
+        }
+
+        @Override
+        Object apply(Object value) {
+            if (value instanceof Double) return -(double) value;
+            return deoptimize(value);
+        }
+    }
+
+    static final class GenericUnary extends UnaryNode {
+        GenericUnary(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            return apply(right.execute());
+        }
+
+        @Override
+        Object apply(Object value) {
+            return Operators.unary(operator, value);
+        }
+    }
+
+    abstract static class BinaryNode extends Node {
+        final Token operator;
+        Node left;
+        Node right;
+
+        BinaryNode(Node left, Token operator, Node right) {
+            this.operator = operator;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        /**
+         * The result for already evaluated operands.
+         */
+        abstract Object apply(Object left, Object right);
+
+        final Object deoptimize(Object leftValue, Object rightValue) {
+            return replace(new GenericBinary(left, operator, right)).apply(leftValue, rightValue);
+        }
+
+        @Override
+        void replaceChild(Node child, Node replacement) {
+            if (left == child) {
+                left = replacement;
+            } else {
+                right = replacement;
+            }
+        }
+    }
+
+    static final class UninitializedBinary extends BinaryNode {
+        UninitializedBinary(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            Object rightValue = right.execute();
+            return apply(leftValue, rightValue);
+        }
+
+        @Override
+        Object apply(Object leftValue, Object rightValue) {
+            return replace(specialize(leftValue, rightValue)).apply(leftValue, rightValue);
+        }
+
+        private BinaryNode specialize(Object leftValue, Object rightValue) {
+            boolean numbers = leftValue instanceof Double && rightValue instanceof Double;
+            switch (operator.type) {
+                case PLUS:
+                    if (numbers) return new Add(left, operator, right);
+                    if (leftValue instanceof String && rightValue instanceof String) {
+                        return new StringConcat(left, operator, right);
+                    }
+                    break;
+                case MINUS:
+                    if (numbers) return new Subtract(left, operator, right);
+                    break;
+                case STAR:
+                    if (numbers) return new Multiply(left, operator, right);
+                    break;
+                case SLASH:
+                    if (numbers) return new Divide(left, operator, right);
+                    break;
+                case GREATER:
+                    if (numbers) return new Greater(left, operator, right);
+                    break;
+                case GREATER_EQUAL:
+                    if (numbers) return new GreaterEqual(left, operator, right);
+                    break;
+                case LESS:
+                    if (numbers) return new Less(left, operator, right);
+                    break;
+                case LESS_EQUAL:
+                    if (numbers) return new LessEqual(left, operator, right);
+                    break;
+                default:
+                    // == and != accept any values.
+                    break;
+            }
+            return new GenericBinary(left, operator, right);
+        }
+    }
+
+    /**
+     * Arithmetic on two numbers.
+     */
+    abstract static class NumberBinary extends BinaryNode {
+        NumberBinary(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        abstract double compute(double left, double right);
+
+        @Override
+        Object execute() {
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult result) {
+                return result.value;
+            }
+        }
+
+        @Override
+        double executeDouble() throws UnexpectedResult {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult result) {
+                return expectDouble(deoptimize(result.value, right.execute()));
+            }
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult result) {
+                return expectDouble(deoptimize(leftValue, result.value));
+            }
+            return compute(leftValue, rightValue);
+        }
+
+        @Override
+        Object apply(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Double && rightValue instanceof Double) {
+                return compute((double) leftValue, (double) rightValue);
+            }
+            return deoptimize(leftValue, rightValue);
+        }
+    }
+
+    static final class Add extends NumberBinary {
+        Add(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return left + right;
+        }
+    }
+
+    static final class Subtract extends NumberBinary {
+        Subtract(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return left - right;
+        }
+    }
+
+    static final class Multiply extends NumberBinary {
+        Multiply(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return left * right;
+        }
+    }
+
+    static final class Divide extends NumberBinary {
+        Divide(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        double compute(double left, double right) {
+            return left / right;
+        }
+    }
+
+    /**
+     * Comparison of two numbers.
+     */
+    abstract static class NumberComparison extends BinaryNode {
+        NumberComparison(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        abstract boolean compare(double left, double right);
+
+        @Override
+        Object execute() {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult result) {
+                return deoptimize(result.value, right.execute());
+            }
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult result) {
+                return deoptimize(leftValue, result.value);
+            }
+            return compare(leftValue, rightValue);
+        }
+
+        @Override
+        Object apply(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Double && rightValue instanceof Double) {
+                return compare((double) leftValue, (double) rightValue);
+            }
+            return deoptimize(leftValue, rightValue);
+        }
+    }
+
+    static final class Greater extends NumberComparison {
+        Greater(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left > right;
+        }
+    }
+
+    static final class GreaterEqual extends NumberComparison {
+        GreaterEqual(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left >= right;
+        }
+    }
+
+    static final class Less extends NumberComparison {
+        Less(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left < right;
+        }
+    }
+
+    static final class LessEqual extends NumberComparison {
+        LessEqual(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        boolean compare(double left, double right) {
+            return left <= right;
+        }
+    }
+
+    static final class StringConcat extends BinaryNode {
+        StringConcat(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            Object rightValue = right.execute();
+            return apply(leftValue, rightValue);
+        }
+
+        @Override
+        Object apply(Object leftValue, Object rightValue) {
+            if (leftValue instanceof String && rightValue instanceof String) {
+                return (String) leftValue + rightValue;
+            }
+            return deoptimize(leftValue, rightValue);
+        }
+    }
+
+    /**
+     * Any operands, every check is done on every execution like {@link Interpreter}.
+     */
+    static final class GenericBinary extends BinaryNode {
+        GenericBinary(Node left, Token operator, Node right) {
+            super(left, operator, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            Object rightValue = right.execute();
+            return apply(leftValue, rightValue);
+        }
+
+        @Override
+        Object apply(Object leftValue, Object rightValue) {
+            return Operators.binary(leftValue, operator, rightValue);
+        }
+    }
+}
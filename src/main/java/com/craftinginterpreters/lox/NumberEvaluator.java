@@ -0,0 +1,84 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Specialized evaluator for purely numeric trees.
+ * <p>
+ * {@link Interpreter} returns every intermediate value as an {@code Object}, so each
+ * arithmetic node boxes a new {@code Double}. Trees made only of number literals and
+ * {@code + - * /} (and unary {@code -}) can be evaluated on primitive doubles instead,
+ * which only unboxes the leaves and allocates nothing.
+ */
+final class NumberEvaluator {
+    private static final byte NUMERIC = 1;
+    private static final byte NOT_NUMERIC = 2;
+
+    private NumberEvaluator() {
+    }
+
+    /**
+     * Whether the whole tree can be evaluated by {@link #evaluate(Expr)}. The answer is cached in every node, so
+     * only the first call walks the tree.
+     */
+    static boolean isNumeric(Expr expr) {
+        byte numeric = expr.numeric;
+        if (numeric == 0) {
+            numeric = classify(expr) ? NUMERIC : NOT_NUMERIC;
+            expr.numeric = numeric;
+        }
+        return numeric == NUMERIC;
+    }
+
+    private static boolean classify(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            return ((Expr.Literal) expr).value instanceof Double;
+        }
+        if (expr instanceof Expr.Grouping) {
+            return isNumeric(((Expr.Grouping) expr).expression);
+        }
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            return unary.operator.type == TokenType.MINUS && isNumeric(unary.right);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case PLUS:
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return isNumeric(binary.left) && isNumeric(binary.right);
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates a tree accepted by {@link #isNumeric(Expr)}.
+     */
+    static double evaluate(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            double left = evaluate(binary.left);
+            double right = evaluate(binary.right);
+            switch (binary.operator.type) {
+                case PLUS:
+                    return left + right;
+                case MINUS:
+                    return left - right;
+                case STAR:
+                    return left * right;
+                case SLASH:
+                    return left / right;
+            }
+        } else if (expr instanceof Expr.Literal) {
+            return (Double) ((Expr.Literal) expr).value;
+        } else if (expr instanceof Expr.Grouping) {
+            return evaluate(((Expr.Grouping) expr).expression);
+        } else if (expr instanceof Expr.Unary) {
+            return -evaluate(((Expr.Unary) expr).right);
+        }
+        throw new IllegalArgumentException("Not a numeric expression.");
+    }
+}
@@ -0,0 +1,37 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Instruction set of the {@link VM}. Every instruction is one byte, {@link #CONSTANT} is
+ * followed by a two-byte big-endian index into the constant pool.
+ */
+final class OpCode {
+    static final byte CONSTANT = 0;
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte EQUAL = 4;
+    static final byte NOT_EQUAL = 5;
+    static final byte GREATER = 6;
+    static final byte GREATER_EQUAL = 7;
+    static final byte LESS = 8;
+    static final byte LESS_EQUAL = 9;
+    static final byte ADD = 10;
+    static final byte SUBTRACT = 11;
+    static final byte MULTIPLY = 12;
+    static final byte DIVIDE = 13;
+    static final byte NOT = 14;
+    static final byte NEGATE = 15;
+    static final byte RETURN = 16;
+
+    private static final String[] NAMES = {
+            "CONSTANT", "NIL", "TRUE", "FALSE", "EQUAL", "NOT_EQUAL", "GREATER", "GREATER_EQUAL",
+            "LESS", "LESS_EQUAL", "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "NOT", "NEGATE", "RETURN"
+    };
+
+    private OpCode() {
+    }
+
+    static String name(byte op) {
+        return NAMES[op];
+    }
+}
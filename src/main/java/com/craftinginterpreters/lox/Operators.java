@@ -0,0 +1,178 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * The operators of Lox on boxed values: the one definition of truthiness, equality, their type checks and
+ * {@link RuntimeError}s. Used by {@link Interpreter}, {@link VM}, the code generated by {@link JvmCompiler} and
+ * the generic {@link Node}s. {@link ColumnarEvaluator}, which works on whole columns of primitives, raises the
+ * messages below. The {@code double} overloads are for operands already known to be numbers.
+ */
+final class Operators {
+    static final String NUMBER_OPERAND = "Operand must be a number.";
+    static final String NUMBER_OPERANDS = "Operands must be numbers.";
+    static final String ADD_OPERANDS = "Operands must be two numbers or two strings.";
+
+    private Operators() {
+    }
+
+    /**
+     * Applies any binary operator.
+     */
+    static Object binary(Object left, Token operator, Object right) {
+        switch (operator.type) {
+            case BANG_EQUAL:
+                return notEqual(left, right);
+            case EQUAL_EQUAL:
+                return equal(left, right);
+            case GREATER:
+                return greater(left, right, operator);
+            case GREATER_EQUAL:
+                return greaterEqual(left, right, operator);
+            case LESS:
+                return less(left, right, operator);
+            case LESS_EQUAL:
+                return lessEqual(left, right, operator);
+            case MINUS:
+                return subtract(left, right, operator);
+            case PLUS:
+                return add(left, right, operator);
+            case SLASH:
+                return divide(left, right, operator);
+            case STAR:
+                return multiply(left, right, operator);
+            default:
+                throw new IllegalArgumentException("Unknown operator " + operator.type);
+        }
+    }
+
+    /**
+     * Applies any unary operator.
+     */
+    static Object unary(Token operator, Object right) {
+        if (operator.type == TokenType.BANG) return not(right);
+        return negate(right, operator);
+    }
+
+    /**
+     * Fails the lookup of a variable that isn't bound.
+     */
+    static Object undefined(Token name) {
+        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    }
+
+    /**
+     * The error of the backends that compile a tree on their own, {@link BytecodeCompiler}, {@link JvmCompiler}
+     * and {@link Node}. Only {@link Interpreter} and {@link ColumnarEvaluator} bind variables, so those backends
+     * reject them instead of compiling code that could only fail.
+     */
+    static RuntimeError unsupportedVariable(Token name) {
+        return new RuntimeError(name,
+                "Variables are only supported by the interpreter and the columnar evaluator, not '" + name.lexeme + "'.");
+    }
+
+    static Object add(Object left, Object right, Token operator) {
+        if (left instanceof Double && right instanceof Double) {
+            return (double) left + (double) right;
+        }
+        if (left instanceof String && right instanceof String) {
+            return (String) left + right;
+        }
+        throw new RuntimeError(operator, ADD_OPERANDS);
+    }
+
+    static Object subtract(Object left, Object right, Token operator) {
+        checkNumberOperands(operator, left, right);
+        return (double) left - (double) right;
+    }
+
+    static Object multiply(Object left, Object right, Token operator) {
+        checkNumberOperands(operator, left, right);
+        return (double) left * (double) right;
+    }
+
+    static Object divide(Object left, Object right, Token operator) {
+        checkNumberOperands(operator, left, right);
+        return (double) left / (double) right;
+    }
+
+    static Object greater(Object left, Object right, Token operator) {
+        checkNumberOperands(operator, left, right);
+        return (double) left > (double) right;
+    }
+
+    static Object greaterEqual(Object left, Object right, Token operator) {
+        checkNumberOperands(operator, left, right);
+        return (double) left >= (double) right;
+    }
+
+    static Object less(Object left, Object right, Token operator) {
+        checkNumberOperands(operator, left, right);
+        return (double) left < (double) right;
+    }
+
+    static Object lessEqual(Object left, Object right, Token operator) {
+        checkNumberOperands(operator, left, right);
+        return (double) left <= (double) right;
+    }
+
+    static Object greater(double left, double right) {
+        return left > right;
+    }
+
+    static Object greaterEqual(double left, double right) {
+        return left >= right;
+    }
+
+    static Object less(double left, double right) {
+        return left < right;
+    }
+
+    static Object lessEqual(double left, double right) {
+        return left <= right;
+    }
+
+    static boolean isTruthy(Object object) {
+        if (object == null) return false;
+        if (object instanceof Boolean) return (boolean) object;
+        return true;
+    }
+
+    static boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) return true;
+        if (a == null) return false;
+        return a.equals(b);
+    }
+
+    static Object equal(Object left, Object right) {
+        return isEqual(left, right);
+    }
+
+    static Object notEqual(Object left, Object right) {
+        return !isEqual(left, right);
+    }
+
+    /**
+     * Same as {@code Double.equals}, which {@link #isEqual(Object, Object)} uses: {@code NaN} equals
+     * itself and {@code 0.0} doesn't equal {@code -0.0}.
+     */
+    static Object equal(double left, double right) {
+        return Double.compare(left, right) == 0;
+    }
+
+    static Object notEqual(double left, double right) {
+        return Double.compare(left, right) != 0;
+    }
+
+    static Object not(Object right) {
+        return !isTruthy(right);
+    }
+
+    static Object negate(Object right, Token operator) {
+        if (!(right instanceof Double)) throw new RuntimeError(operator, NUMBER_OPERAND);
+        return -(double) right;
+    }
+
+    static void checkNumberOperands(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) return;
+        throw new RuntimeError(operator, NUMBER_OPERANDS);
+    }
+}
@@ -0,0 +1,172 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans a large source in parallel.
+ * <p>
+ * The source is split into chunks at safe boundaries: right after a newline that is not inside a
+ * string literal or a block comment, so no token can span two chunks. Finding them only needs a
+ * cheap pass that tracks whether we are in code, a string or a comment, and counts the lines on the
+ * way. Every chunk is then scanned by its own {@link Scanner} on a {@link ForkJoinPool}, and the
+ * token lists are stitched together. The result is identical to {@link Scanner#scanTokens()},
+ * errors are reported in source order too, to {@link Lox} unless {@link #withReporter(ErrorReporter)} says
+ * otherwise.
+ */
+public class ParallelScanner {
+    /**
+     * Chunks smaller than this aren't worth a task of their own.
+     */
+    static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private ErrorReporter reporter = Lox.REPORTER;
+
+    public ParallelScanner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelScanner(ForkJoinPool pool) {
+        this(pool, MIN_CHUNK_SIZE);
+    }
+
+    ParallelScanner(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reports scan errors to the given reporter instead of {@link Lox}, like {@link Parser#withReporter}.
+     */
+    ParallelScanner withReporter(ErrorReporter reporter) {
+        this.reporter = reporter;
+        return this;
+    }
+
+    public List<Token> scanTokens(String source) {
+        int chunks = Math.min(pool.getParallelism() * 4, source.length() / chunkSize);
+        if (chunks < 2) {
+            return new Scanner(source, null, reporter).scanTokens();
+        }
+        List<Range> ranges = split(source, chunks);
+        if (ranges.size() < 2) {
+            return new Scanner(source, null, reporter).scanTokens();
+        }
+
+        List<ScanChunk> tasks = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            tasks.add(new ScanChunk(source, range, reporter));
+        }
+        pool.invoke(new ScanAll(tasks));
+
+        int size = 0;
+        for (ScanChunk task : tasks) {
+            size += task.join().size() - 1;
+        }
+        List<Token> tokens = new ArrayList<>(size + 1);
+        for (int i = 0; i < tasks.size(); i++) {
+            ScanChunk task = tasks.get(i);
+            List<Token> chunkTokens = task.join();
+            task.scanner.reportDeferredErrors();
+            // Only the EOF of the last chunk is the real end of the source.
+            boolean last = i == tasks.size() - 1;
+            tokens.addAll(last ? chunkTokens : chunkTokens.subList(0, chunkTokens.size() - 1));
+        }
+        return tokens;
+    }
+
+    /**
+     * Splits the source into about {@code chunks} pieces, each one ends right after a newline in code.
+     */
+    static List<Range> split(String source, int chunks) {
+        List<Range> result = new ArrayList<>(chunks);
+        int target = source.length() / chunks;
+        int length = source.length();
+        int begin = 0;
+        int beginLine = 1;
+        int line = 1;
+        boolean inString = false;
+        boolean inLineComment = false;
+        boolean inBlockComment = false;
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            if (c == '\n') {
+                line++;
+                inLineComment = false;
+                if (!inString && !inBlockComment && i + 1 - begin >= target && i + 1 < length) {
+                    result.add(new Range(begin, i + 1, beginLine));
+                    begin = i + 1;
+                    beginLine = line;
+                }
+            } else if (inString) {
+                if (c == '"') inString = false;
+            } else if (inBlockComment) {
+                if (c == '*' && i + 1 < length && source.charAt(i + 1) == '/') {
+                    inBlockComment = false;
+                    i++;
+                }
+            } else if (!inLineComment) {
+                if (c == '"') {
+                    inString = true;
+                } else if (c == '/' && i + 1 < length) {
+                    char next = source.charAt(i + 1);
+                    if (next == '/') {
+                        inLineComment = true;
+                        i++;
+                    } else if (next == '*') {
+                        inBlockComment = true;
+                        i++;
+                    }
+                }
+            }
+        }
+        result.add(new Range(begin, length, beginLine));
+        return result;
+    }
+
+    /**
+     * The range {@code [begin, end)} of the source, {@code line} is the line it starts at.
+     */
+    static class Range {
+        final int begin;
+        final int end;
+        final int line;
+
+        Range(int begin, int end, int line) {
+            this.begin = begin;
+            this.end = end;
+            this.line = line;
+        }
+    }
+
+    private static class ScanChunk extends RecursiveTask<List<Token>> {
+        final Scanner scanner;
+
+        ScanChunk(String source, Range range, ErrorReporter reporter) {
+            this.scanner = new Scanner(source, range.begin, range.end, range.line, reporter);
+        }
+
+        @Override
+        protected List<Token> compute() {
+            return scanner.scanTokens();
+        }
+    }
+
+    private static class ScanAll extends RecursiveTask<Void> {
+        final List<ScanChunk> tasks;
+
+        ScanAll(List<ScanChunk> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected Void compute() {
+            invokeAll(tasks);
+            return null;
+        }
+    }
+}
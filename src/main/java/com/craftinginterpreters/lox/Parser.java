@@ -1,5 +1,7 @@
 package com.craftinginterpreters.lox;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.craftinginterpreters.lox.TokenType.*;
@@ -9,19 +11,187 @@ import static com.craftinginterpreters.lox.TokenType.*;
  * 7/21/22
  */
 public class Parser {
-    private final List<Token> tokens;
+    /**
+     * The tokens to parse, from a {@link TokenBuffer} {@code Token} objects are only materialized for
+     * operators and errors.
+     */
+    private final TokenSource tokens;
     private int current = 0;
+    /**
+     * Builds the nodes of the tree.
+     */
+    private ExprFactory factory = ExprFactory.PLAIN;
+    /**
+     * Receives the syntax errors.
+     */
+    private ErrorReporter reporter = Lox.REPORTER;
+    /**
+     * Set by the first error of a statement, further errors are not reported until {@link #synchronize()}
+     * reaches the next statement, they are most likely caused by the first one.
+     */
+    private boolean panicMode = false;
+    private int errorCount = 0;
+    /**
+     * Stands in for an operand that couldn't be parsed, so parsing continues without unwinding.
+     */
+    private static final Expr ERROR = new Expr.Literal(null);
+
+    /**
+     * Binding power of every binary operator, indexed by {@code TokenType.ordinal()}.
+     * Zero means the token is not a binary operator. All of them are left-associative.
+     */
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+    private static final int PREC_EQUALITY = 1;
+    private static final int PREC_COMPARISON = 2;
+    private static final int PREC_TERM = 3;
+    private static final int PREC_FACTOR = 4;
+    /**
+     * Stack frames of {@link #iterativeExpression()} that are not binary operators.
+     */
+    private static final int FRAME_PREFIX = 0;
+    private static final int FRAME_PAREN = -1;
+
+    static {
+        PRECEDENCE[BANG_EQUAL.ordinal()] = PREC_EQUALITY;
+        PRECEDENCE[EQUAL_EQUAL.ordinal()] = PREC_EQUALITY;
+        PRECEDENCE[GREATER.ordinal()] = PREC_COMPARISON;
+        PRECEDENCE[GREATER_EQUAL.ordinal()] = PREC_COMPARISON;
+        PRECEDENCE[LESS.ordinal()] = PREC_COMPARISON;
+        PRECEDENCE[LESS_EQUAL.ordinal()] = PREC_COMPARISON;
+        PRECEDENCE[MINUS.ordinal()] = PREC_TERM;
+        PRECEDENCE[PLUS.ordinal()] = PREC_TERM;
+        PRECEDENCE[SLASH.ordinal()] = PREC_FACTOR;
+        PRECEDENCE[STAR.ordinal()] = PREC_FACTOR;
+    }
 
 
     public Parser(List<Token> tokens) {
+        this.tokens = new TokenList(tokens);
+    }
+
+    public Parser(TokenBuffer tokens) {
         this.tokens = tokens;
     }
+
+    /**
+     * Parses while scanning, pulling tokens from the scanner only when they are needed.
+     */
+    public Parser(Scanner scanner) {
+        this.tokens = new TokenLookahead(scanner::nextToken);
+        this.reporter = scanner.reporter();
+    }
+
+    /**
+     * Parses while scanning UTF-8 bytes, see {@link #Parser(Scanner)}.
+     */
+    Parser(Utf8Scanner scanner) {
+        this.tokens = new TokenLookahead(scanner::nextToken);
+        this.reporter = scanner.reporter();
+    }
+    /**
+     * Builds the tree through the given factory, e.g. a {@link HashConsingFactory} to share subtrees.
+     */
+    Parser withFactory(ExprFactory factory) {
+        this.factory = factory;
+        return this;
+    }
+
+    /**
+     * Reports syntax errors to the given reporter instead of {@link Lox}. A parser pulling from a
+     * {@link Scanner} uses the reporter of the scanner.
+     */
+    Parser withReporter(ErrorReporter reporter) {
+        this.reporter = reporter;
+        return this;
+    }
+
+    /**
+     * Parses one expression.
+     * @return The tree, {@code null} if there was an error
+     */
     Expr parse() {
-        try {
-            return expression();
-        } catch (ParserError error) {
+        Expr expr = expression();
+        return errorCount == 0 ? expr : null;
+    }
+
+    /**
+     * Parses the same grammar into the same tree as {@link #parse()}, by precedence climbing over the
+     * {@link #PRECEDENCE} table instead of one method per precedence level.
+     * <p>
+     * An operand costs one {@link #prattBinary(int)} and one {@link #prattPrefix()} call instead of
+     * walking the whole {@code expression -> ... -> primary} chain, and tokens are dispatched with a
+     * table lookup or a switch, so no varargs arrays are allocated.
+     */
+    Expr parsePratt() {
+        Expr expr = prattBinary(PREC_EQUALITY);
+        return errorCount == 0 ? expr : null;
+    }
+
+    /**
+     * Parses the same grammar into the same tree, with the same errors, as {@link #parsePratt()}, without
+     * recursion. Operators waiting for their right operand, prefix operators and open parentheses are kept on
+     * an explicit stack on the heap, so the nesting depth is only limited by memory.
+     */
+    Expr parseIterative() {
+        Expr expr = iterativeExpression();
+        return errorCount == 0 ? expr : null;
+    }
+
+    /**
+     * Parses a program, a sequence of expression statements each ending with {@code ;}, the last one may leave
+     * it out. After an error the parser skips to the next statement and goes on, so one pass reports the first
+     * error of every statement. Errors don't throw, a malformed program costs about as much as a valid one.
+     * @return The statements, empty if there was an error
+     */
+    List<Expr> parseProgram() {
+        List<Expr> statements = new ArrayList<>();
+        while (!isAtEnd()) {
+            Expr statement = statement();
+            if (statement != null) statements.add(statement);
+        }
+        if (errorCount > 0) statements.clear();
+        return statements;
+    }
+
+    /**
+     * Parses the statement starting at the current token, after an error skips to the start of the next one.
+     * The expression is parsed without recursion, so statements can nest as deep as memory allows.
+     * @return The tree, {@code null} if the statement had an error
+     */
+    Expr statement() {
+        int start = current;
+        Expr statement = iterativeExpression();
+        if (!match(SEMICOLON) && !isAtEnd()) {
+            error(peek(), "Expect ';' after expression.");
+        }
+        if (panicMode) {
+            synchronize(start);
             return null;
         }
+        return statement;
+    }
+
+    /**
+     * Index of the current token.
+     */
+    int position() {
+        return current;
+    }
+
+    /**
+     * Continues at the token at the index, which must start a statement. Lets {@link IncrementalParser} re-parse
+     * only the statements an edit changed.
+     */
+    Parser seek(int index) {
+        current = index;
+        return this;
+    }
+
+    /**
+     * Number of syntax errors found, including the ones not reported in panic mode.
+     */
+    int errorCount() {
+        return errorCount;
     }
 
     private Expr expression() {
@@ -33,19 +203,19 @@ public class Parser {
         while (match(BANG_EQUAL, EQUAL_EQUAL)) {
             Token operator = previous();
             Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
         return expr;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 
     private boolean match(TokenType... types) {
         for (TokenType type : types) {
             if (check(type)) {
-                advance();
+                skip();
                 return true;
             }
 
@@ -59,16 +229,20 @@ public class Parser {
         if (isAtEnd()) {
             return false;
         }
-        return peek().type == type;
+        return peekType() == type;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
+    }
+
+    private TokenType peekType() {
+        return tokens.type(current);
     }
 
-    private boolean isAtEnd() {
+    boolean isAtEnd() {
 
-        return peek().type == EOF;
+        return peekType() == EOF;
 
     }
 
@@ -77,12 +251,19 @@ public class Parser {
         return previous();
     }
 
+    /**
+     * Like {@link #advance()}, without materializing the consumed token.
+     */
+    private void skip() {
+        if (!isAtEnd()) current++;
+    }
+
     private Expr comparison() {
         Expr expr = term();
-        while (match(GREATER, GREATER, LESS, LESS_EQUAL)) {
+        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
             Token operator = previous();
             Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
         return expr;
 
@@ -93,7 +274,7 @@ public class Parser {
         while (match(MINUS, PLUS)) {
             Token operator = previous();
             Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
         return expr;
     }
@@ -103,64 +284,190 @@ public class Parser {
         while (match(SLASH, STAR)) {
             Token operator = previous();
             Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
+            expr = factory.binary(expr, operator, right);
         }
         return expr;
     }
 
     private Expr unary() {
-        if (match(BANG, BANG_EQUAL)) {
+        if (match(BANG, MINUS)) {
             Token operator = previous();
             Expr right = unary();
-            return new Expr.Unary(operator, right);
+            return factory.unary(operator, right);
         }
         return primary();
     }
 
     private Expr primary() {
-        if (match(FALSE)) return new Expr.Literal(false);
-        if (match(TRUE)) return new Expr.Literal(true);
-        if (match(NIL)) return new Expr.Literal(null);
-        if (match(NUMBER, STRING)) return new Expr.Literal(previous().literal);
+        if (match(FALSE)) return factory.literal(false);
+        if (match(TRUE)) return factory.literal(true);
+        if (match(NIL)) return factory.literal(null);
+        if (match(NUMBER, STRING)) return factory.literal(tokens.literal(current - 1));
+        if (match(IDENTIFIER)) return factory.variable(previous());
 
         if (match(LEFT_PAREN)) {
             Expr expr = expression();
             consume(RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
+            return factory.grouping(expr);
         }
-        throw error(peek(), "Expression.");
+        return error(peek(), "Expect expression.");
+    }
+
+    /**
+     * Parses a chain of binary operators binding at least as tight as {@code minPrecedence}.
+     */
+    private Expr prattBinary(int minPrecedence) {
+        Expr expr = prattPrefix();
+        int precedence;
+        while ((precedence = PRECEDENCE[peekType().ordinal()]) >= minPrecedence) {
+            Token operator = advance();
+            // Left-associative: the right operand only takes operators that bind tighter.
+            Expr right = prattBinary(precedence + 1);
+            expr = factory.binary(expr, operator, right);
+        }
+        return expr;
+    }
 
+    /**
+     * Operator precedence parsing with explicit stacks: {@code frames} holds, innermost last, the binary operators
+     * by their precedence, and {@link #FRAME_PREFIX} and {@link #FRAME_PAREN} markers. A binary operator's left
+     * operand waits on {@code operands}.
+     */
+    private Expr iterativeExpression() {
+        Expr[] operands = new Expr[16];
+        int operandCount = 0;
+        Token[] operators = new Token[16];
+        int[] frames = new int[16];
+        int frameCount = 0;
+        for (; ; ) {
+            // Any number of prefix operators and open parentheses, then a literal.
+            Expr operand;
+            for (; ; ) {
+                TokenType type = peekType();
+                if (type != BANG && type != MINUS && type != LEFT_PAREN) {
+                    operand = literal();
+                    break;
+                }
+                if (frameCount == frames.length) {
+                    frames = Arrays.copyOf(frames, frameCount * 2);
+                    operators = Arrays.copyOf(operators, frameCount * 2);
+                }
+                if (type == LEFT_PAREN) {
+                    skip();
+                    frames[frameCount] = FRAME_PAREN;
+                    operators[frameCount++] = null;
+                } else {
+                    frames[frameCount] = FRAME_PREFIX;
+                    operators[frameCount++] = advance();
+                }
+            }
 
+            // Close everything the operand completes, until an operator needs a right operand.
+            for (; ; ) {
+                while (frameCount > 0 && frames[frameCount - 1] == FRAME_PREFIX) {
+                    operand = factory.unary(operators[--frameCount], operand);
+                }
+                int precedence = PRECEDENCE[peekType().ordinal()];
+                // Left-associative: operators binding at least as tight as the next one are complete.
+                while (frameCount > 0 && frames[frameCount - 1] > 0 && frames[frameCount - 1] >= precedence) {
+                    operand = factory.binary(operands[--operandCount], operators[--frameCount], operand);
+                }
+                if (precedence > 0) {
+                    if (operandCount == operands.length) operands = Arrays.copyOf(operands, operandCount * 2);
+                    operands[operandCount++] = operand;
+                    if (frameCount == frames.length) {
+                        frames = Arrays.copyOf(frames, frameCount * 2);
+                        operators = Arrays.copyOf(operators, frameCount * 2);
+                    }
+                    frames[frameCount] = precedence;
+                    operators[frameCount++] = advance();
+                    break;
+                }
+                if (frameCount == 0) return operand;
+                // The top frame is an open parenthesis.
+                frameCount--;
+                consume(RIGHT_PAREN, "Expect ')' after expression.");
+                operand = factory.grouping(operand);
+            }
+        }
     }
 
-    private Token consume(TokenType type, String message) {
-        if (check(type)) return advance();
-        throw error(peek(), message);
+    private Expr prattPrefix() {
+        switch (peekType()) {
+            case BANG:
+            case MINUS: {
+                Token operator = advance();
+                return factory.unary(operator, prattPrefix());
+            }
+            case LEFT_PAREN: {
+                skip();
+                Expr expr = prattBinary(PREC_EQUALITY);
+                consume(RIGHT_PAREN, "Expect ')' after expression.");
+                return factory.grouping(expr);
+            }
+            default:
+                return literal();
+        }
     }
 
     /**
-     * Logging the error and return the ParserError, to let the calling method decide
-     * whether to unwind or not.
-     *
-     * @param token
-     * @param message
-     * @return
+     * A literal or a variable, or the error for a token that can't start an operand.
      */
-    private ParserError error(Token token, String message) {
-        Lox.error(token, message);
-        return new ParserError();
-
+    private Expr literal() {
+        switch (peekType()) {
+            case FALSE:
+                skip();
+                return factory.literal(false);
+            case TRUE:
+                skip();
+                return factory.literal(true);
+            case NIL:
+                skip();
+                return factory.literal(null);
+            case NUMBER:
+            case STRING:
+                skip();
+                return factory.literal(tokens.literal(current - 1));
+            case IDENTIFIER:
+                return factory.variable(advance());
+            default:
+                return error(peek(), "Expect expression.");
+        }
     }
 
+    private void consume(TokenType type, String message) {
+        if (check(type)) {
+            skip();
+            return;
+        }
+        error(peek(), message);
+    }
 
-    private static class ParserError extends RuntimeException {
+    /**
+     * Reports the error unless the statement already had one, and enters panic mode.
+     * @return The placeholder for the operand that couldn't be parsed
+     */
+    private Expr error(Token token, String message) {
+        errorCount++;
+        if (!panicMode) {
+            panicMode = true;
+            reporter.error(token, message);
+        }
+        return ERROR;
     }
 
-    private void synchronize() {
-        advance();
+    /**
+     * Leaves panic mode and skips to the start of the next statement: past a {@code ;}, or to a keyword
+     * that starts a statement. Always moves past at least one token of the broken statement.
+     * @param start Index of the first token of the broken statement
+     */
+    private void synchronize(int start) {
+        panicMode = false;
+        if (current > start && tokens.type(current - 1) == SEMICOLON) return;
+        skip();
         while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) return;
-            switch (peek().type) {
+            if (tokens.type(current - 1) == SEMICOLON) return;
+            switch (peekType()) {
                 case CLASS:
                 case FUN:
                 case VAR:
@@ -172,7 +479,7 @@ public class Parser {
                     return;
 
             }
-            advance();
+            skip();
         }
     }
 }
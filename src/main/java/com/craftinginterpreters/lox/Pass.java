@@ -0,0 +1,107 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * A tree-to-tree transformation run by {@link PassManager}.
+ * <p>
+ * By default every node is rebuilt bottom-up, and kept as it is when none of its children changed.
+ * Passes override the visit methods of the nodes they rewrite.
+ */
+abstract class Pass implements Expr.Visitor<Expr> {
+
+    /**
+     * Name used in the {@link PassManager} report.
+     */
+    abstract String name();
+
+    Expr apply(Expr expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = expr.left.accept(this);
+        Expr right = expr.right.accept(this);
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr expression = expr.expression.accept(this);
+        if (expression == expr.expression) return expr;
+        return new Expr.Grouping(expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = expr.right.accept(this);
+        if (right == expr.right) return expr;
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    /**
+     * Skips over groupings, which don't change the value.
+     */
+    static Expr unwrap(Expr expr) {
+        while (expr instanceof Expr.Grouping) {
+            expr = ((Expr.Grouping) expr).expression;
+        }
+        return expr;
+    }
+
+    /**
+     * Whether the expression is statically known to evaluate to a number (or fail).
+     */
+    static boolean isNumber(Expr expr) {
+        expr = unwrap(expr);
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Double;
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type == TokenType.MINUS;
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return true;
+                case PLUS:
+                    return isNumber(binary.left) && isNumber(binary.right);
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the expression is statically known to evaluate to a boolean (or fail).
+     */
+    static boolean isBoolean(Expr expr) {
+        expr = unwrap(expr);
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Boolean;
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type == TokenType.BANG;
+        if (expr instanceof Expr.Binary) {
+            switch (((Expr.Binary) expr).operator.type) {
+                case BANG_EQUAL:
+                case EQUAL_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+}
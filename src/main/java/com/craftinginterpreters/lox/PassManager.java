@@ -0,0 +1,103 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a pipeline of {@link Pass}es over a parsed expression.
+ * <p>
+ * The pipeline is repeated until a round changes nothing, because one pass can expose more work for
+ * another: folding {@code x * (2 - 1)} into {@code x * 1} lets simplification drop the multiplication.
+ * The number of nodes each pass removed is summed over all rounds.
+ */
+class PassManager {
+    private static final int MAX_ROUNDS = 8;
+
+    private final List<Pass> passes = new ArrayList<>();
+    private final Map<String, Integer> removed = new LinkedHashMap<>();
+
+    /**
+     * The default pipeline: grouping elimination, constant folding and algebraic simplification.
+     */
+    static PassManager standard() {
+        return new PassManager()
+                .add(new GroupingElimination())
+                .add(new ConstantFolding())
+                .add(new AlgebraicSimplification());
+    }
+
+    PassManager add(Pass pass) {
+        passes.add(pass);
+        removed.putIfAbsent(pass.name(), 0);
+        return this;
+    }
+
+    Expr run(Expr expr) {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            for (Pass pass : passes) {
+                Expr result = pass.apply(expr);
+                if (result != expr) {
+                    int before = countNodes(expr);
+                    int after = countNodes(result);
+                    removed.merge(pass.name(), before - after, Integer::sum);
+                    changed = true;
+                    expr = result;
+                }
+            }
+            if (!changed) break;
+        }
+        return expr;
+    }
+
+    /**
+     * Number of nodes each pass removed so far, in pipeline order.
+     */
+    Map<String, Integer> removedNodes() {
+        return removed;
+    }
+
+    String report() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : removed.entrySet()) {
+            builder.append(entry.getKey()).append(": removed ").append(entry.getValue()).append(" nodes\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Nodes of the tree, counted on the {@link PostOrder} driver so trees of any depth can be measured.
+     */
+    static int countNodes(Expr expr) {
+        return PostOrder.walk(expr, NODE_COUNT);
+    }
+
+    private static final PostOrder.Visitor<Integer> NODE_COUNT = new PostOrder.Visitor<Integer>() {
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr, Integer left, Integer right) {
+            return 1 + left + right;
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr, Integer expression) {
+            return 1 + expression;
+        }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr, Integer right) {
+            return 1 + right;
+        }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) {
+            return 1;
+        }
+    };
+}
@@ -0,0 +1,78 @@
+package com.craftinginterpreters.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.List;
+
+/**
+ * Flight recorder events of the phases of a run, written when a recording enables them, for example with
+ * {@code java -XX:StartFlightRecording:filename=lox.jfr}. Without a recording an event costs a check of a flag,
+ * and its counts are not computed.
+ */
+final class PipelineEvents {
+    private PipelineEvents() {
+    }
+
+    @Name("lox.Scan")
+    @Label("Scan")
+    @Category("Lox")
+    @Description("Scanning a source into tokens")
+    @StackTrace(false)
+    static final class Scan extends Event {
+        @Label("Source Size")
+        @Description("Characters of the source")
+        int sourceSize;
+
+        @Label("Tokens")
+        int tokens;
+    }
+
+    @Name("lox.Parse")
+    @Label("Parse")
+    @Category("Lox")
+    @Description("Parsing the tokens of a source into statement trees")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Statements")
+        int statements;
+
+        @Label("Nodes")
+        @Description("Nodes of all the statement trees")
+        int nodes;
+
+        @Label("Errors")
+        int errors;
+    }
+
+    @Name("lox.Execute")
+    @Label("Execute")
+    @Category("Lox")
+    @Description("Running the statements of a source: optimizing and evaluating them and printing their values")
+    @StackTrace(false)
+    static final class Execute extends Event {
+        @Label("Statements")
+        int statements;
+
+        @Label("Nodes")
+        int nodes;
+    }
+
+    /**
+     * Nodes of all the trees.
+     */
+    static int countNodes(List<Expr> statements) {
+        int nodes = 0;
+        for (Expr statement : statements) {
+            nodes += PassManager.countNodes(statement);
+        }
+        return nodes;
+    }
+}
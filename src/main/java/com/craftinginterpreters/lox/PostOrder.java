@@ -0,0 +1,91 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Visits a tree in post-order without recursion: the children of a node are visited before it, left before
+ * right, and their results are handed to it.
+ * <p>
+ * The nodes waiting for their children and the results of the visited children are kept on arrays on the heap,
+ * so a tree can be as deep as memory allows, where a recursive {@link Expr.Visitor} runs out of stack after a
+ * few thousand levels.
+ */
+final class PostOrder {
+    /**
+     * Computes the result of a node from the results of its children.
+     */
+    interface Visitor<R> {
+        R visitBinaryExpr(Expr.Binary expr, R left, R right);
+
+        R visitGroupingExpr(Expr.Grouping expr, R expression);
+
+        R visitLiteralExpr(Expr.Literal expr);
+
+        R visitUnaryExpr(Expr.Unary expr, R right);
+
+        R visitVariableExpr(Expr.Variable expr);
+    }
+
+    private PostOrder() {
+    }
+
+    /**
+     * @return The result of the root
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R walk(Expr root, Visitor<R> visitor) {
+        Expr[] nodes = new Expr[16];
+        // Whether the children of the node are already on the stack.
+        boolean[] expanded = new boolean[16];
+        int depth = 0;
+        Object[] results = new Object[16];
+        int count = 0;
+
+        nodes[depth++] = root;
+        while (depth > 0) {
+            Expr node = nodes[depth - 1];
+            if (node instanceof Expr.Literal || node instanceof Expr.Variable) {
+                depth--;
+                if (count == results.length) results = Arrays.copyOf(results, count * 2);
+                results[count++] = node instanceof Expr.Literal
+                        ? visitor.visitLiteralExpr((Expr.Literal) node)
+                        : visitor.visitVariableExpr((Expr.Variable) node);
+                continue;
+            }
+            if (!expanded[depth - 1]) {
+                expanded[depth - 1] = true;
+                if (depth + 2 > nodes.length) {
+                    nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    expanded = Arrays.copyOf(expanded, expanded.length * 2);
+                }
+                // The right operand goes first, so the left one is on top and visited first.
+                if (node instanceof Expr.Binary) {
+                    nodes[depth] = ((Expr.Binary) node).right;
+                    expanded[depth++] = false;
+                    nodes[depth] = ((Expr.Binary) node).left;
+                    expanded[depth++] = false;
+                } else if (node instanceof Expr.Grouping) {
+                    nodes[depth] = ((Expr.Grouping) node).expression;
+                    expanded[depth++] = false;
+                } else {
+                    nodes[depth] = ((Expr.Unary) node).right;
+                    expanded[depth++] = false;
+                }
+                continue;
+            }
+            nodes[--depth] = null;
+            R result;
+            if (node instanceof Expr.Binary) {
+                R right = (R) results[--count];
+                R left = (R) results[--count];
+                result = visitor.visitBinaryExpr((Expr.Binary) node, left, right);
+            } else if (node instanceof Expr.Grouping) {
+                result = visitor.visitGroupingExpr((Expr.Grouping) node, (R) results[--count]);
+            } else {
+                result = visitor.visitUnaryExpr((Expr.Unary) node, (R) results[--count]);
+            }
+            results[count++] = result;
+        }
+        return (R) results[0];
+    }
+}
@@ -0,0 +1,162 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves interactive sessions to local socket connections, every session runs on a thread of its own.
+ * <p>
+ * The protocol is the one of the interactive prompt: the server sends a {@code "> "} line, the client sends a
+ * line of source, the server answers with the value of every statement or the errors and the next prompt. An empty line or the
+ * end of the input ends the session. Every line is compiled by the reentrant {@link LoxCompiler} with a
+ * {@link SymbolTable} of its own, so a long session doesn't accumulate symbols, and every session has its own
+ * {@link Interpreter}. Nothing is shared with other sessions or with the static state of {@link Lox}.
+ * <p>
+ * Sessions run on virtual threads when the JVM has them (Java 21 and later), otherwise on one platform thread
+ * each.
+ */
+public class ReplServer implements Closeable {
+    static final String PROMPT = "> ";
+    /**
+     * Connections waiting to be accepted, the kernel may cap it lower.
+     */
+    private static final int BACKLOG = 4096;
+
+    private final ServerSocket server;
+    private final ExecutorService sessions = newThreadPerTaskExecutor("lox-session", 0);
+    private final Thread acceptor;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger served = new AtomicInteger();
+
+    /**
+     * Binds to the loopback interface.
+     * @param port The port, 0 for any free port
+     */
+    public ReplServer(int port) throws IOException {
+        server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::accept, "lox-acceptor");
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    public ReplServer start() {
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * Waits until the server is closed.
+     */
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    int activeSessions() {
+        return active.get();
+    }
+
+    int servedSessions() {
+        return served.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        sessions.shutdownNow();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException error) {
+                if (server.isClosed()) return;
+                System.err.println("Accept failed: " + error.getMessage());
+                continue;
+            }
+            sessions.execute(() -> serve(socket));
+        }
+    }
+
+    private void serve(Socket socket) {
+        active.incrementAndGet();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)))) {
+            Session session = new Session();
+            for (; ; ) {
+                out.println(PROMPT);
+                out.flush();
+                String line = in.readLine();
+                if (line == null || line.isEmpty()) break;
+                session.run(line, out);
+            }
+        } catch (SocketException error) {
+            // The client went away.
+        } catch (IOException error) {
+            System.err.println("Session failed: " + error.getMessage());
+        } finally {
+            active.decrementAndGet();
+            served.incrementAndGet();
+        }
+    }
+
+    /**
+     * State of one client.
+     */
+    private static class Session {
+        private static final LoxCompiler compiler = new LoxCompiler(true);
+        private final Interpreter interpreter = new Interpreter();
+
+        void run(String source, PrintWriter out) {
+            CompileResult result = compiler.compile(source);
+            for (String message : result.messages()) {
+                out.println(message);
+            }
+            try {
+                for (Expr statement : result.statements()) {
+                    out.println(Interpreter.stringify(interpreter.evaluate(statement)));
+                }
+            } catch (RuntimeError error) {
+                out.println(ErrorReporter.format(error));
+            } catch (StackOverflowError error) {
+                out.println("Expression too deep.");
+            }
+        }
+    }
+
+    /**
+     * An executor starting a thread for every task: a virtual thread when the JVM has them, otherwise a daemon
+     * platform thread.
+     * @param stackSize Stack size of platform threads, 0 for the default
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name, long stackSize) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException error) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, name + "-" + threads.incrementAndGet(), stackSize);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Raised while evaluating an expression, carries the token used to report the line.
+ */
+class RuntimeError extends RuntimeException {
+    final Token token;
+
+    RuntimeError(Token token, String message) {
+        super(message);
+        this.token = token;
+    }
+}
@@ -26,38 +26,80 @@ public class Scanner {
      */
     private final String source;
     /**
-     * Saves parsed token from source.
+     * Scanning stops at this position, the length of the source unless scanning a chunk.
      */
+    private final int end;
+    /**
+     * Errors of a chunk scanned by {@link ParallelScanner}, reported later in source order.
+     * {@code null} when errors go straight to {@link Lox}.
+     */
+    private final List<ScanError> deferredErrors;
+    /**
+     * Type of the token recognized by the last {@link #scanToken()}, {@code null} when it only skipped
+     * whitespace or comments.
+     */
+    private TokenType scanned;
+    /**
+     * Interns the lexemes and string literals of the tokens, {@code null} to create a new string for each.
+     */
+    private final SymbolTable symbols;
+    /**
+     * Receives the errors, or the deferred errors of a chunk.
+     */
+    private final ErrorReporter reporter;
 
-    private final List<Token> tokens;
-
-    private static final Map<String,TokenType> keywords;
-    static {
-        keywords = Map.ofEntries(
-                Map.entry("and", AND),
-                Map.entry("class", CLASS),
-                Map.entry("else",ELSE),
-                Map.entry("false",FALSE),
-                Map.entry("for",FOR),
-                Map.entry("fun",FUN),
-                Map.entry("if",IF),
-                Map.entry("nil",NIL),
-                Map.entry("or",OR),
-                Map.entry("print",PRINT),
-                Map.entry("return",RETURN),
-                Map.entry("super",SUPER),
-                Map.entry("this",THIS),
-                Map.entry("true",TRUE),
-                Map.entry("var",VAR),
-                Map.entry("while",WHILE)
-
-        );
+    public Scanner(String source) {
+        this(source, null);
     }
 
-    public Scanner(String source) {
+    /**
+     * Scans with a symbol table shared by the whole compilation, repeated lexemes and string literals
+     * become the same {@code String} instance.
+     */
+    Scanner(String source, SymbolTable symbols) {
+        this(source, symbols, Lox.REPORTER);
+    }
+
+    /**
+     * Reports errors to the given reporter instead of {@link Lox}, so several sources can be scanned at once.
+     */
+    Scanner(String source, SymbolTable symbols, ErrorReporter reporter) {
+        this.source = source;
+        this.end = source.length();
+        this.deferredErrors = null;
+        this.symbols = symbols;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Scans only the chunk {@code [begin, end)} of the source, which starts at the given line.
+     * Tokens keep their offsets in the whole source and errors are collected instead of reported, until
+     * {@link #reportDeferredErrors()} passes them to the reporter.
+     */
+    Scanner(String source, int begin, int end, int line, ErrorReporter reporter) {
         this.source = source;
-        tokens=new ArrayList<>();
+        this.start = begin;
+        this.current = begin;
+        this.end = end;
+        this.line = line;
+        this.deferredErrors = new ArrayList<>();
+        this.symbols = null;
+        this.reporter = reporter;
+    }
 
+    /**
+     * Scans from {@code begin} to the end of the source, which starts at the given line, for
+     * {@link IncrementalParser} to re-scan an edited source from the first token the edit may have changed.
+     */
+    Scanner(String source, int begin, int line, SymbolTable symbols, ErrorReporter reporter) {
+        this.source = source;
+        this.start = begin;
+        this.current = begin;
+        this.end = source.length();
+        this.line = line;
+        this.deferredErrors = null;
+        this.symbols = symbols;
+        this.reporter = reporter;
     }
 
     /**
@@ -65,12 +107,80 @@ public class Scanner {
      * @return The token list
      */
     public List<Token> scanTokens() {
-        while (!isAtEnd()) {
+        List<Token> tokens = new ArrayList<>();
+        TokenType type;
+        do {
+            Token token = nextToken();
+            tokens.add(token);
+            type = token.type;
+        } while (type != EOF);
+        return tokens;
+    }
+
+    /**
+     * Scan source from begin to end into the compact {@link TokenBuffer}, which only keeps the type, offsets
+     * and line of every token. Neither {@code Token} objects nor lexeme strings are created.
+     * @return The token buffer, ends with an {@code EOF} token
+     */
+    public TokenBuffer scanTokenBuffer() {
+        TokenBuffer buffer = new TokenBuffer(source, symbols, Math.max(16, source.length() / 4));
+        TokenType type;
+        do {
+            type = scanNext();
+            buffer.add(type, start, current, line);
+        } while (type != EOF);
+        return buffer;
+    }
+
+    /**
+     * Pull interface of the scanner, scans just the next token.
+     * @return The next token, {@code EOF} once the source is exhausted and on every call after that
+     */
+    public Token nextToken() {
+        TokenType type = scanNext();
+        return new Token(type, text(symbols, source, start, current), literal(symbols, source, type, start, current), line);
+    }
+
+    /**
+     * Skips whitespace and comments and scans the next token, which lies between {@code start} and
+     * {@code current}.
+     * @return The token type, {@code EOF} once the source is exhausted
+     */
+    TokenType scanNext() {
+        scanned = null;
+        while (scanned == null && !isAtEnd()) {
             start = current;
             scanToken();
         }
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        if (scanned == null) {
+            start = current;
+            return EOF;
+        }
+        return scanned;
+    }
+
+    /**
+     * The literal value of a token, strings drop the surrounding quotes.
+     * @param symbols Interns string values, may be {@code null}
+     * @return The value for {@code NUMBER} and {@code STRING} tokens, otherwise {@code null}
+     */
+    static Object literal(SymbolTable symbols, String source, TokenType type, int start, int end) {
+        switch (type) {
+            case NUMBER:
+                return Double.parseDouble(source.substring(start, end));
+            case STRING:
+                return text(symbols, source, start + 1, end - 1);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The text of {@code source[start, end)}, the canonical instance when there is a symbol table.
+     */
+    static String text(SymbolTable symbols, String source, int start, int end) {
+        if (symbols == null) return source.substring(start, end);
+        return symbols.intern(source, start, end);
     }
 
     /**
@@ -124,12 +234,17 @@ public class Scanner {
             case '/':
                 if (match('/')) {
                     // A comment goes until the end of the line.
-                    while (peek() != '\n' && isAtEnd()) advance();
+                    while (peek() != '\n' && !isAtEnd()) advance();
                 } else if (match('*')) {
-                    while (peek() != '*' && peekNext() != '/') {
+                    while (!(peek() == '*' && peekNext() == '/') && !isAtEnd()) {
                         if(peek()=='\n') line++;
                         advance();
                     }
+                    if (isAtEnd()) {
+                        error(line, "Unterminated comment.");
+                        break;
+                    }
+                    // The closing */.
                     advance();
                     advance();
 
@@ -152,7 +267,7 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexpected character.");
+                    error(line, "Unexpected character.");
                 }
                 break;
         }
@@ -160,10 +275,55 @@ public class Scanner {
 
     private void identifier() {
         while(isAlphaNumberic(peek())) advance();
-        String text=source.substring(start,current);
-        TokenType type = keywords.get(text);
-        if(type==null) type=IDENTIFIER;
-        addToken(type);
+        addToken(identifierType(source, start, current));
+    }
+
+    /**
+     * Tells keywords from identifiers by looking at the characters in place, without allocating the lexeme.
+     * Switches on the first (and for 'f' and 't' the second) character, then compares the rest of the one
+     * keyword that can still match.
+     * @return The keyword type, or {@code IDENTIFIER}
+     */
+    static TokenType identifierType(String source, int start, int end) {
+        int length = end - start;
+        switch (source.charAt(start)) {
+            case 'a': return checkKeyword(source, start, length, 1, "nd", AND);
+            case 'c': return checkKeyword(source, start, length, 1, "lass", CLASS);
+            case 'e': return checkKeyword(source, start, length, 1, "lse", ELSE);
+            case 'f':
+                if (length > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a': return checkKeyword(source, start, length, 2, "lse", FALSE);
+                        case 'o': return checkKeyword(source, start, length, 2, "r", FOR);
+                        case 'u': return checkKeyword(source, start, length, 2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i': return checkKeyword(source, start, length, 1, "f", IF);
+            case 'n': return checkKeyword(source, start, length, 1, "il", NIL);
+            case 'o': return checkKeyword(source, start, length, 1, "r", OR);
+            case 'p': return checkKeyword(source, start, length, 1, "rint", PRINT);
+            case 'r': return checkKeyword(source, start, length, 1, "eturn", RETURN);
+            case 's': return checkKeyword(source, start, length, 1, "uper", SUPER);
+            case 't':
+                if (length > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h': return checkKeyword(source, start, length, 2, "is", THIS);
+                        case 'r': return checkKeyword(source, start, length, 2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(source, start, length, 1, "ar", VAR);
+            case 'w': return checkKeyword(source, start, length, 1, "hile", WHILE);
+        }
+        return IDENTIFIER;
+    }
+
+    private static TokenType checkKeyword(String source, int start, int length, int offset, String rest, TokenType type) {
+        if (length == offset + rest.length() && source.regionMatches(start + offset, rest, 0, rest.length())) {
+            return type;
+        }
+        return IDENTIFIER;
     }
 
     private boolean isAlphaNumberic(char c) {
@@ -187,13 +347,11 @@ public class Scanner {
             advance();
             while (isDigit(peek()))advance();
         }
-        addToken(NUMBER,Double.parseDouble(source.substring(start,current)));
+        addToken(NUMBER);
     }
 
     private char peekNext() {
-        //Done 验证这段逻辑是否等价于 isAtEnd()
-//        if(current+1>=source.length()) return '\0';
-        if(isAtEnd()) return '\0';
+        if (current + 1 >= end) return '\0';
         return source.charAt(current + 1);
 
     }
@@ -213,15 +371,13 @@ public class Scanner {
             advance();
         }
         if (isAtEnd()) {
-            Lox.error(line,"Unterminated string.");
+            error(line,"Unterminated string.");
             return;
         }
         // The closing ".
         advance();
-        // now the start is at the open double-quote and current at end double-quote, string literal don't need the quote.
-        // Trim the surrounding quotes.
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING,value);
+        // The value without the surrounding quotes is built by literal() when it's needed.
+        addToken(STRING);
 
     }
 
@@ -248,19 +404,11 @@ public class Scanner {
 
 
     /**
-     * For adding the simple tokens
+     * Records the token between {@code start} and {@code current}.
      * @param type TokenType
      */
     private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    /**
-     * For adding Literal token
-     */
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        scanned = type;
     }
 
     /**
@@ -275,7 +423,59 @@ public class Scanner {
      * Whether scan to the end.
      */
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end;
+    }
+
+    private void error(int line, String message) {
+        if (deferredErrors != null) {
+            deferredErrors.add(new ScanError(line, message));
+        } else {
+            reporter.error(line, message);
+        }
+    }
+
+    /**
+     * Reports the errors collected while scanning a chunk.
+     */
+    void reportDeferredErrors() {
+        for (ScanError error : deferredErrors) {
+            reporter.error(error.line, error.message);
+        }
+    }
+
+    ErrorReporter reporter() {
+        return reporter;
+    }
+
+    /**
+     * Start offset of the last token scanned, or of the character or comment being reported as an error.
+     */
+    int tokenStart() {
+        return start;
+    }
+
+    /**
+     * End offset of the last token scanned.
+     */
+    int tokenEnd() {
+        return current;
+    }
+
+    /**
+     * Line at the end of the last token scanned, the line {@code Token}s and {@link TokenBuffer} record.
+     */
+    int line() {
+        return line;
+    }
+
+    private static class ScanError {
+        final int line;
+        final String message;
+
+        ScanError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
     }
 
     public static void main(String[] args) {
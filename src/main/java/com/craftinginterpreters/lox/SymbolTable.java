@@ -0,0 +1,110 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Interns lexemes and string literals: every distinct text is stored once, and the scanners hand out that one
+ * {@code String}.
+ * <p>
+ * Lookups go straight from a range of the source to the symbol, comparing characters in place, so a
+ * text that is already interned costs no allocation. One table is meant to be shared by everything
+ * scanned in a compilation, it only grows, so it lives as long as the compilation. Not thread-safe.
+ */
+class SymbolTable {
+    /**
+     * Object header, fields and array header of a {@code String}, roughly, with compressed oops.
+     */
+    private static final int STRING_OVERHEAD = 40;
+
+    private String[] symbols = new String[64];
+    private int[] hashes = new int[64];
+    /**
+     * Open addressing table of {@code id + 1}, {@code 0} marks an empty slot. An id is the index of a symbol.
+     */
+    private int[] slots = new int[128];
+    private int count = 0;
+
+    private long lookups = 0;
+    private long hits = 0;
+    private long bytesSaved = 0;
+
+    /**
+     * @return The canonical string with the same characters as {@code source[start, end)}
+     */
+    String intern(String source, int start, int end) {
+        // id() may grow the array, so don't read the field first.
+        int id = id(source, start, end);
+        return symbols[id];
+    }
+
+    String intern(String text) {
+        return intern(text, 0, text.length());
+    }
+
+    /**
+     * @return The id of the symbol with the same characters as {@code source[start, end)}, adding it if needed
+     */
+    private int id(String source, int start, int end) {
+        lookups++;
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                int id = add(source.substring(start, end), hash);
+                slots[i] = id + 1;
+                if (count * 2 > slots.length) rehash();
+                return id;
+            }
+            int id = slot - 1;
+            if (hashes[id] == hash && symbols[id].length() == end - start
+                    && source.regionMatches(start, symbols[id], 0, end - start)) {
+                hits++;
+                bytesSaved += STRING_OVERHEAD + 2L * (end - start);
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Number of distinct symbols.
+     */
+    int size() {
+        return count;
+    }
+
+    String report() {
+        return String.format("%d lookups, %d unique symbols, %d deduplicated (%.1f%%), ~%d bytes saved",
+                lookups, count, hits, lookups == 0 ? 0.0 : hits * 100.0 / lookups, bytesSaved);
+    }
+
+    private int add(String symbol, int hash) {
+        if (count == symbols.length) {
+            symbols = Arrays.copyOf(symbols, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        symbols[count] = symbol;
+        hashes[count] = hash;
+        return count++;
+    }
+
+    private void rehash() {
+        int[] bigger = new int[slots.length * 2];
+        int mask = bigger.length - 1;
+        for (int id = 0; id < count; id++) {
+            int i = hashes[id] & mask;
+            while (bigger[i] != 0) i = (i + 1) & mask;
+            bigger[i] = id + 1;
+        }
+        slots = bigger;
+    }
+
+    private static int hash(String source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + source.charAt(i);
+        }
+        // Spread the high bits, the table index only uses the low ones.
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,179 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tiered execution of expressions.
+ * <p>
+ * Every root expression starts in tier 0, the tree-walking {@link Interpreter}, and counts how often it is
+ * evaluated. Once the count reaches the threshold the tree is compiled to a JVM class by {@link JvmCompiler}
+ * and every later evaluation runs that class, tier 1. Trees that don't fit in a class file stay in tier 0, and
+ * so do trees with variables, which only the interpreter binds (see {@link #define(String, Object)}).
+ * <p>
+ * Profiles are keyed by structural equality and the lines of the tokens, so a tree parsed again from the same
+ * source reuses the compiled class, while the same expression on another line gets its own class and reports
+ * runtime errors on its own line. Only the most recently used {@link #MAX_PROFILES} trees are kept. Not
+ * thread-safe.
+ */
+class TieredExecutor {
+    static final int DEFAULT_THRESHOLD = 100;
+    static final int MAX_PROFILES = 1024;
+
+    private final Interpreter interpreter = new Interpreter();
+    private final JvmCompiler compiler = new JvmCompiler();
+    private final int threshold;
+    private final Map<Key, Profile> profiles = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Profile> eldest) {
+            return size() > MAX_PROFILES;
+        }
+    };
+    private int compiled = 0;
+    private int failed = 0;
+
+    TieredExecutor() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold Evaluations in tier 0 before a tree is compiled, 1 compiles it right away
+     */
+    TieredExecutor(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("Threshold must be positive.");
+        this.threshold = threshold;
+    }
+
+    /**
+     * Binds {@code name} in the interpreter of tier 0, like {@link Interpreter#define(String, Object)}.
+     */
+    void define(String name, Object value) {
+        interpreter.define(name, value);
+    }
+
+    /**
+     * Evaluates the expression and prints its value, runtime errors are reported to {@link Lox}.
+     */
+    void interpret(Expr expression) {
+        try {
+            Object value = evaluate(expression);
+            System.out.println(Interpreter.stringify(value));
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    /**
+     * Evaluates the expression in its current tier, the same value or {@link RuntimeError} in every tier.
+     */
+    Object evaluate(Expr expression) {
+        Key key = new Key(expression);
+        Profile profile = profiles.get(key);
+        if (profile == null) {
+            profile = new Profile();
+            profiles.put(key, profile);
+        }
+        if (profile.code != null) {
+            return profile.code.evaluate();
+        }
+        // Only the evaluation reaching the threshold tries to compile, a tree that failed isn't retried.
+        if (++profile.count == threshold) {
+            profile.code = compile(expression);
+            if (profile.code != null) return profile.code.evaluate();
+        }
+        return interpreter.evaluate(expression);
+    }
+
+    /**
+     * The tier the expression runs in, 0 for the interpreter and 1 for compiled code.
+     */
+    int tier(Expr expression) {
+        Profile profile = profiles.get(new Key(expression));
+        return profile != null && profile.code != null ? 1 : 0;
+    }
+
+    private CompiledExpr compile(Expr expression) {
+        try {
+            CompiledExpr code = compiler.compile(expression);
+            compiled++;
+            return code;
+        } catch (IllegalStateException | StackOverflowError | RuntimeError error) {
+            // Too large for a class file, too deep to generate or with variables: it stays interpreted.
+            failed++;
+            return null;
+        }
+    }
+
+    /**
+     * How many trees are profiled, compiled and couldn't be compiled.
+     */
+    String report() {
+        return String.format("tiered: %d profiled, %d compiled, %d not compilable (threshold %d)%n",
+                profiles.size(), compiled, failed, threshold);
+    }
+
+    /**
+     * A tree as profile key: equal when the trees are equal and their tokens are on the same lines.
+     * <p>
+     * The hash is the cached structural one, trees that differ only in their lines share a bucket.
+     */
+    private static final class Key {
+        final Expr expression;
+
+        Key(Expr expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public int hashCode() {
+            return expression.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Expr other = ((Key) o).expression;
+            return expression == other || (expression.equals(other) && sameLines(expression, other));
+        }
+
+        /**
+         * Compares the lines of two equal trees, without recursion since trees can be deeper than the stack.
+         */
+        private static boolean sameLines(Expr a, Expr b) {
+            Deque<Expr> pending = new ArrayDeque<>();
+            pending.push(a);
+            pending.push(b);
+            while (!pending.isEmpty()) {
+                Expr y = pending.pop();
+                Expr x = pending.pop();
+                if (x == y) continue;
+                if (x instanceof Expr.Binary) {
+                    Expr.Binary bx = (Expr.Binary) x, by = (Expr.Binary) y;
+                    if (bx.operator.line != by.operator.line) return false;
+                    pending.push(bx.left);
+                    pending.push(by.left);
+                    pending.push(bx.right);
+                    pending.push(by.right);
+                } else if (x instanceof Expr.Unary) {
+                    Expr.Unary ux = (Expr.Unary) x, uy = (Expr.Unary) y;
+                    if (ux.operator.line != uy.operator.line) return false;
+                    pending.push(ux.right);
+                    pending.push(uy.right);
+                } else if (x instanceof Expr.Grouping) {
+                    pending.push(((Expr.Grouping) x).expression);
+                    pending.push(((Expr.Grouping) y).expression);
+                } else if (x instanceof Expr.Variable) {
+                    if (((Expr.Variable) x).name.line != ((Expr.Variable) y).name.line) return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Profile {
+        int count = 0;
+        CompiledExpr code = null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Compact token stream, stores every token as a type ordinal, the start and end offsets in the
+ * source and the line number in parallel primitive arrays.
+ * <p>
+ * Lexemes, literals and {@link Token} objects are only built when {@link #lexeme(int)},
+ * {@link #literal(int)} or {@link #token(int)} are called.
+ */
+public class TokenBuffer implements TokenSource {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    /**
+     * Changes when {@link IncrementalParser} splices an edit in.
+     */
+    private String source;
+    /**
+     * Interns the lexemes and string literals built on demand, may be {@code null}.
+     */
+    private final SymbolTable symbols;
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int size = 0;
+
+    TokenBuffer(String source, SymbolTable symbols, int capacity) {
+        this.source = source;
+        this.symbols = symbols;
+        types = new byte[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        lines = new int[capacity];
+    }
+
+    void add(TokenType type, int start, int end, int line) {
+        if (size == types.length) ensureCapacity(size + 1);
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        size++;
+    }
+
+    /**
+     * Replaces the tokens {@code [from, to)} by the tokens of {@code replacement}, and moves the following ones by
+     * the given offset and line deltas. Updates the buffer in place for {@link IncrementalParser} after an edit.
+     * @param source The edited source
+     */
+    void splice(String source, int from, int to, TokenBuffer replacement, int offsetDelta, int lineDelta) {
+        int count = replacement.size;
+        int tail = size - to;
+        ensureCapacity(from + count + tail);
+        System.arraycopy(types, to, types, from + count, tail);
+        System.arraycopy(starts, to, starts, from + count, tail);
+        System.arraycopy(ends, to, ends, from + count, tail);
+        System.arraycopy(lines, to, lines, from + count, tail);
+        System.arraycopy(replacement.types, 0, types, from, count);
+        System.arraycopy(replacement.starts, 0, starts, from, count);
+        System.arraycopy(replacement.ends, 0, ends, from, count);
+        System.arraycopy(replacement.lines, 0, lines, from, count);
+        size = from + count + tail;
+        if (offsetDelta != 0) {
+            for (int i = from + count; i < size; i++) {
+                starts[i] += offsetDelta;
+                ends[i] += offsetDelta;
+            }
+        }
+        if (lineDelta != 0) {
+            for (int i = from + count; i < size; i++) {
+                lines[i] += lineDelta;
+            }
+        }
+        this.source = source;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) return;
+        capacity = Math.max(capacity, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    int line(int index) {
+        return lines[index];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    String lexeme(int index) {
+        return Scanner.text(symbols, source, starts[index], ends[index]);
+    }
+
+    @Override
+    public Object literal(int index) {
+        return Scanner.literal(symbols, source, type(index), starts[index], ends[index]);
+    }
+
+    /**
+     * Materializes the token at the index, a new object every call.
+     */
+    @Override
+    public Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), lines[index]);
+    }
+}
@@ -0,0 +1,31 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * Already scanned {@link Token} objects, read by {@link Parser#Parser(List)}.
+ * <p>
+ * Unlike {@link TokenBuffer} the tokens don't know their offsets in the source, so the list can only be read.
+ */
+class TokenList implements TokenSource {
+    private final List<Token> tokens;
+
+    TokenList(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public TokenType type(int index) {
+        return tokens.get(index).type;
+    }
+
+    @Override
+    public Object literal(int index) {
+        return tokens.get(index).literal;
+    }
+
+    @Override
+    public Token token(int index) {
+        return tokens.get(index);
+    }
+}
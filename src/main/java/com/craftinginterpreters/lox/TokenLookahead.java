@@ -0,0 +1,51 @@
+package com.craftinginterpreters.lox;
+
+import java.util.function.Supplier;
+
+/**
+ * Pulls tokens from {@link Scanner#nextToken()} or {@link Utf8Scanner#nextToken()} on demand and keeps the last few in a ring buffer.
+ * <p>
+ * The parser only looks at the current and the previous token, so the memory used for tokens stays
+ * the same no matter how big the source is. Reading a token that already fell out of the window is a
+ * bug in the caller and throws {@link IllegalStateException}.
+ */
+class TokenLookahead implements TokenSource {
+    /**
+     * Window size, must be a power of two.
+     */
+    private static final int CAPACITY = 8;
+    private static final int MASK = CAPACITY - 1;
+
+    private final Supplier<Token> scanner;
+    private final Token[] ring = new Token[CAPACITY];
+    /**
+     * Number of tokens pulled from the scanner so far.
+     */
+    private int filled = 0;
+
+    TokenLookahead(Supplier<Token> scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public TokenType type(int index) {
+        return token(index).type;
+    }
+
+    @Override
+    public Object literal(int index) {
+        return token(index).literal;
+    }
+
+    @Override
+    public Token token(int index) {
+        while (index >= filled) {
+            ring[filled & MASK] = scanner.get();
+            filled++;
+        }
+        if (index < filled - CAPACITY) {
+            throw new IllegalStateException("Token " + index + " is no longer in the lookahead window.");
+        }
+        return ring[index & MASK];
+    }
+}
@@ -0,0 +1,15 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Tokens addressed by their absolute index in the source, as read by {@link Parser}.
+ * <p>
+ * {@link TokenBuffer} keeps every token, {@link TokenList} wraps {@code Token} objects scanned before and
+ * {@link TokenLookahead} only keeps a small window around the parser's position.
+ */
+interface TokenSource {
+    TokenType type(int index);
+
+    Object literal(int index);
+
+    Token token(int index);
+}
@@ -0,0 +1,418 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/**
+ * Scans UTF-8 bytes in place, typically a memory-mapped file, with the same tokens, lines and errors as
+ * {@link Scanner} on the decoded text.
+ * <p>
+ * Nothing is decoded up front: every byte Lox cares about outside string literals is ASCII, so the bytes are
+ * scanned directly. Tokens with a fixed spelling share constant lexemes, only identifiers, numbers and string
+ * literals are decoded, when their token is pulled. Together with a {@link Parser} pulling through
+ * {@link TokenLookahead} the heap used for the source stays the same whatever the size of the file, the file
+ * itself lives in the page cache.
+ * <p>
+ * A mapping can't exceed 2 GB, so the bytes are split in segments of {@code 1 << segmentShift} bytes, only a
+ * token crossing a segment boundary is copied.
+ * <p>
+ * Whitespace, comments, the rest of identifiers and string literals are skipped a run at a time by a
+ * {@link ByteSkipper}, vectorized when the Vector API is available. That only pays off for long runs: on
+ * code of short tokens every byte goes through the segmented buffer and scanning is several times slower than
+ * {@link Scanner} on the decoded {@code String}.
+ */
+class Utf8Scanner {
+    /**
+     * Segments of 1 GB.
+     */
+    static final int SEGMENT_SHIFT = 30;
+    /**
+     * Lexeme of every token type with a fixed spelling, indexed by {@code TokenType.ordinal()}.
+     */
+    private static final String[] LEXEMES = new String[TokenType.values().length];
+    /**
+     * The keywords, indexed by their first letter minus {@code 'a'}.
+     */
+    private static final TokenType[][] KEYWORDS = new TokenType[26][];
+
+    static {
+        String[] punctuation = {"(", ")", "{", "}", ",", ".", "-", "+", ";", "/", "*",
+                "!", "!=", "=", "==", ">", ">=", "<", "<="};
+        for (int i = 0; i < punctuation.length; i++) {
+            LEXEMES[LEFT_PAREN.ordinal() + i] = punctuation[i];
+        }
+        LEXEMES[EOF.ordinal()] = "";
+        for (int i = AND.ordinal(); i <= WHILE.ordinal(); i++) {
+            TokenType keyword = TokenType.values()[i];
+            String lexeme = keyword.name().toLowerCase();
+            LEXEMES[i] = lexeme;
+            int letter = lexeme.charAt(0) - 'a';
+            TokenType[] same = KEYWORDS[letter] == null ? new TokenType[0] : KEYWORDS[letter];
+            same = Arrays.copyOf(same, same.length + 1);
+            same[same.length - 1] = keyword;
+            KEYWORDS[letter] = same;
+        }
+    }
+
+    private final ByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final long end;
+    private long start = 0;
+    private long current = 0;
+    private int line = 1;
+    /**
+     * Type of the token recognized by the last {@link #scanToken()}, {@code null} when it only skipped
+     * whitespace or comments.
+     */
+    private TokenType scanned;
+    /**
+     * Copy of the bytes of the token being decoded, reused for every token.
+     */
+    private byte[] scratch = new byte[64];
+    /**
+     * Interns the lexemes and string literals of the tokens, {@code null} to create a new string for each.
+     */
+    private final SymbolTable symbols;
+    private final ErrorReporter reporter;
+    private ByteSkipper skipper = ByteSkipper.best();
+
+    /**
+     * Scans the bytes between the position and the limit of the buffer.
+     */
+    Utf8Scanner(ByteBuffer bytes, SymbolTable symbols, ErrorReporter reporter) {
+        this(new ByteBuffer[]{bytes.slice()}, 31, bytes.remaining(), symbols, reporter);
+    }
+
+    /**
+     * @param segments The bytes, every segment but the last one holds exactly {@code 1 << segmentShift} bytes
+     */
+    Utf8Scanner(ByteBuffer[] segments, int segmentShift, long size, SymbolTable symbols, ErrorReporter reporter) {
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.end = size;
+        this.symbols = symbols;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Maps the file read-only. The mapping stays valid after this returns, it's released when the scanner is
+     * garbage collected.
+     */
+    static Utf8Scanner map(Path path, SymbolTable symbols, ErrorReporter reporter) throws IOException {
+        return map(path, SEGMENT_SHIFT, symbols, reporter);
+    }
+
+    static Utf8Scanner map(Path path, int segmentShift, SymbolTable symbols, ErrorReporter reporter)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long segmentSize = 1L << segmentShift;
+            ByteBuffer[] segments = new ByteBuffer[(int) Math.max(1, (size + segmentSize - 1) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = (long) i << segmentShift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(segmentSize, size - offset));
+            }
+            return new Utf8Scanner(segments, segmentShift, size, symbols, reporter);
+        }
+    }
+
+    /**
+     * Skips runs of bytes with the given skipper instead of {@link ByteSkipper#best()}.
+     */
+    Utf8Scanner withSkipper(ByteSkipper skipper) {
+        this.skipper = skipper;
+        return this;
+    }
+
+    ErrorReporter reporter() {
+        return reporter;
+    }
+
+    /**
+     * Pull interface of the scanner, scans just the next token.
+     * @return The next token, {@code EOF} once the bytes are exhausted and on every call after that
+     */
+    Token nextToken() {
+        TokenType type = scanNext();
+        switch (type) {
+            case IDENTIFIER:
+                return new Token(type, decode(start, current), null, line);
+            case NUMBER: {
+                String lexeme = decode(start, current);
+                return new Token(type, lexeme, Double.parseDouble(lexeme), line);
+            }
+            case STRING:
+                return new Token(type, decode(start, current), decode(start + 1, current - 1), line);
+            default:
+                return new Token(type, LEXEMES[type.ordinal()], null, line);
+        }
+    }
+
+    /**
+     * Skips whitespace and comments and scans the next token, which lies between {@code start} and
+     * {@code current}.
+     * @return The token type, {@code EOF} once the bytes are exhausted
+     */
+    TokenType scanNext() {
+        scanned = null;
+        while (scanned == null && !isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+        if (scanned == null) {
+            start = current;
+            return EOF;
+        }
+        return scanned;
+    }
+
+    /**
+     * The same cases as {@link Scanner}, over bytes.
+     */
+    private void scanToken() {
+        byte c = advance();
+        switch (c) {
+            case '(': scanned = LEFT_PAREN; break;
+            case ')': scanned = RIGHT_PAREN; break;
+            case '{': scanned = LEFT_BRACE; break;
+            case '}': scanned = RIGHT_BRACE; break;
+            case ',': scanned = COMMA; break;
+            case '.': scanned = DOT; break;
+            case '-': scanned = MINUS; break;
+            case '+': scanned = PLUS; break;
+            case ';': scanned = SEMICOLON; break;
+            case '*': scanned = STAR; break;
+            case '!': scanned = match('=') ? BANG_EQUAL : BANG; break;
+            case '=': scanned = match('=') ? EQUAL_EQUAL : EQUAL; break;
+            case '>': scanned = match('=') ? GREATER_EQUAL : GREATER; break;
+            case '<': scanned = match('=') ? LESS_EQUAL : LESS; break;
+            case '/':
+                if (match('/')) {
+                    // A comment goes until the end of the line.
+                    skipTo((byte) '\n', false);
+                } else if (match('*')) {
+                    for (; ; ) {
+                        skipTo((byte) '*', true);
+                        if (isAtEnd()) {
+                            reporter.error(line, "Unterminated comment.");
+                            break;
+                        }
+                        if (peekNext() == '/') {
+                            // The closing */.
+                            advance();
+                            advance();
+                            break;
+                        }
+                        advance();
+                    }
+                } else {
+                    scanned = SLASH;
+                }
+                break;
+            case '\n':
+                line++;
+                // A single space between tokens is not worth a call to the skipper.
+                if (ByteSkipper.Scalar.isWhitespace(peek())) skipWhitespace();
+                break;
+            case ' ':
+            case '\r':
+            case '\t':
+                if (ByteSkipper.Scalar.isWhitespace(peek())) skipWhitespace();
+                break;
+            case '"':
+                string();
+                break;
+            default:
+                if (isDigit(c)) {
+                    number();
+                } else if (isAlpha(c)) {
+                    identifier();
+                } else {
+                    unexpected(c);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Reports a character that can't start a token. {@link Scanner} sees UTF-16 characters, so a multi-byte
+     * sequence is reported once, or twice for the surrogate pair of a 4-byte sequence.
+     */
+    private void unexpected(byte c) {
+        reporter.error(line, "Unexpected character.");
+        if ((c & 0xF8) == 0xF0) reporter.error(line, "Unexpected character.");
+        if ((c & 0xC0) == 0xC0) {
+            while (!isAtEnd() && (peek() & 0xC0) == 0x80) advance();
+        }
+    }
+
+    private void identifier() {
+        while (ByteSkipper.Scalar.isIdentifier(peek())) {
+            ByteBuffer bytes = segments[(int) (current >>> segmentShift)];
+            int from = (int) (current & segmentMask);
+            int to = segmentLimit();
+            int stop = skipper.skipIdentifier(bytes, from, to);
+            current += stop - from;
+            if (stop < to) break;
+        }
+        scanned = identifierType();
+    }
+
+    /**
+     * Compares the bytes in place with the keywords starting with the same letter.
+     */
+    private TokenType identifierType() {
+        byte first = byteAt(start);
+        if (first < 'a' || first > 'z' || KEYWORDS[first - 'a'] == null) return IDENTIFIER;
+        int length = (int) Math.min(current - start, Integer.MAX_VALUE);
+        candidates:
+        for (TokenType keyword : KEYWORDS[first - 'a']) {
+            String lexeme = LEXEMES[keyword.ordinal()];
+            if (lexeme.length() != length) continue;
+            for (int i = 1; i < length; i++) {
+                if (byteAt(start + i) != lexeme.charAt(i)) continue candidates;
+            }
+            return keyword;
+        }
+        return IDENTIFIER;
+    }
+
+    private void number() {
+        while (isDigit(peek())) advance();
+        // Look for a fractional part.
+        if (peek() == '.' && isDigit(peekNext())) {
+            // Consume the "."
+            advance();
+            while (isDigit(peek())) advance();
+        }
+        scanned = NUMBER;
+    }
+
+    /**
+     * Skips a string literal, it's decoded when the token is pulled. The bytes of a multi-byte sequence are
+     * never {@code '"'} or {@code '\n'}, so they need no special case.
+     */
+    private void string() {
+        skipTo((byte) '"', true);
+        if (isAtEnd()) {
+            reporter.error(line, "Unterminated string.");
+            return;
+        }
+        // The closing ".
+        advance();
+        scanned = STRING;
+    }
+
+    /**
+     * Skips the rest of a run of whitespace, counting the lines.
+     */
+    private void skipWhitespace() {
+        while (!isAtEnd()) {
+            ByteBuffer bytes = segments[(int) (current >>> segmentShift)];
+            int from = (int) (current & segmentMask);
+            int to = segmentLimit();
+            int stop = skipper.skipWhitespace(bytes, from, to);
+            line += skipper.count(bytes, from, stop, (byte) '\n');
+            current += stop - from;
+            if (stop < to) return;
+        }
+    }
+
+    /**
+     * Moves to the next {@code target} byte, or the end.
+     * @param countLines Whether to count the lines skipped
+     */
+    private void skipTo(byte target, boolean countLines) {
+        while (!isAtEnd()) {
+            ByteBuffer bytes = segments[(int) (current >>> segmentShift)];
+            int from = (int) (current & segmentMask);
+            int to = segmentLimit();
+            int stop = skipper.indexOf(bytes, from, to, target);
+            if (countLines) line += skipper.count(bytes, from, stop, (byte) '\n');
+            current += stop - from;
+            if (stop < to) return;
+        }
+    }
+
+    /**
+     * Offset in its segment of the end of the segment of {@code current}, or of the end of the bytes.
+     */
+    private int segmentLimit() {
+        return (int) (Math.min(end, (current | segmentMask) + 1) - (current & ~segmentMask));
+    }
+
+    /**
+     * Decodes the bytes {@code [from, to)}, interned when there is a symbol table.
+     */
+    private String decode(long from, long to) {
+        int length = Math.toIntExact(to - from);
+        String text;
+        int segment = (int) (from >>> segmentShift);
+        if (segment == (int) ((to - 1) >>> segmentShift) || length == 0) {
+            ByteBuffer bytes = segments[segment];
+            int offset = (int) (from & segmentMask);
+            if (bytes.hasArray()) {
+                text = new String(bytes.array(), bytes.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+            } else {
+                text = new String(copy(bytes, offset, length), 0, length, StandardCharsets.UTF_8);
+            }
+        } else {
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            for (int i = 0; i < length; i++) scratch[i] = byteAt(from + i);
+            text = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return symbols == null ? text : symbols.intern(text);
+    }
+
+    private byte[] copy(ByteBuffer bytes, int offset, int length) {
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        bytes.get(offset, scratch, 0, length);
+        return scratch;
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> segmentShift)].get((int) (position & segmentMask));
+    }
+
+    private byte peek() {
+        if (isAtEnd()) return '\0';
+        return byteAt(current);
+    }
+
+    private byte peekNext() {
+        if (current + 1 >= end) return '\0';
+        return byteAt(current + 1);
+    }
+
+    private boolean match(char expected) {
+        if (isAtEnd()) return false;
+        if (byteAt(current) != expected) return false;
+        current++;
+        return true;
+    }
+
+    private byte advance() {
+        return byteAt(current++);
+    }
+
+    private boolean isAtEnd() {
+        return current >= end;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAlpha(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+}
@@ -0,0 +1,113 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Stack-based virtual machine running the bytecode produced by {@link BytecodeCompiler}. Every instruction
+ * applies its operator through {@link Operators}, with the token the compiler recorded for it.
+ * <p>
+ * The operand stack is allocated once and reused by every {@link #run(Chunk)}, it only grows
+ * when a chunk needs more slots than any chunk before. Every run clears the slots it used, so the VM doesn't
+ * keep the values of a finished run alive.
+ */
+class VM {
+    private Object[] stack = new Object[256];
+
+    /**
+     * Runs the chunk and prints its value, runtime errors are reported to {@link Lox}.
+     */
+    void interpret(Chunk chunk) {
+        try {
+            Object value = run(chunk);
+            System.out.println(Interpreter.stringify(value));
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    Object run(Chunk chunk) {
+        if (stack.length < chunk.maxStack) {
+            stack = new Object[chunk.maxStack];
+        }
+        try {
+            return execute(chunk.code, chunk.constants, chunk.tokens, stack);
+        } finally {
+            Arrays.fill(stack, 0, chunk.maxStack, null);
+        }
+    }
+
+    private static Object execute(byte[] code, Object[] constants, Token[] tokens, Object[] stack) {
+        int ip = 0;
+        int top = 0;
+        for (; ; ) {
+            byte op = code[ip++];
+            switch (op) {
+                case OpCode.CONSTANT: {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    stack[top++] = constants[index];
+                    break;
+                }
+                case OpCode.NIL:
+                    stack[top++] = null;
+                    break;
+                case OpCode.TRUE:
+                    stack[top++] = Boolean.TRUE;
+                    break;
+                case OpCode.FALSE:
+                    stack[top++] = Boolean.FALSE;
+                    break;
+                case OpCode.EQUAL:
+                    top--;
+                    stack[top - 1] = Operators.equal(stack[top - 1], stack[top]);
+                    break;
+                case OpCode.NOT_EQUAL:
+                    top--;
+                    stack[top - 1] = Operators.notEqual(stack[top - 1], stack[top]);
+                    break;
+                case OpCode.GREATER:
+                    top--;
+                    stack[top - 1] = Operators.greater(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.GREATER_EQUAL:
+                    top--;
+                    stack[top - 1] = Operators.greaterEqual(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.LESS:
+                    top--;
+                    stack[top - 1] = Operators.less(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.LESS_EQUAL:
+                    top--;
+                    stack[top - 1] = Operators.lessEqual(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.ADD:
+                    top--;
+                    stack[top - 1] = Operators.add(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.SUBTRACT:
+                    top--;
+                    stack[top - 1] = Operators.subtract(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.MULTIPLY:
+                    top--;
+                    stack[top - 1] = Operators.multiply(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.DIVIDE:
+                    top--;
+                    stack[top - 1] = Operators.divide(stack[top - 1], stack[top], tokens[ip - 1]);
+                    break;
+                case OpCode.NOT:
+                    stack[top - 1] = Operators.not(stack[top - 1]);
+                    break;
+                case OpCode.NEGATE:
+                    stack[top - 1] = Operators.negate(stack[top - 1], tokens[ip - 1]);
+                    break;
+                case OpCode.RETURN:
+                    return stack[--top];
+                default:
+                    throw new IllegalStateException("Unknown opcode " + op + " at " + (ip - 1));
+            }
+        }
+    }
+}
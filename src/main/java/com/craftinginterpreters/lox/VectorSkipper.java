@@ -0,0 +1,73 @@
+package com.craftinginterpreters.lox;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link ByteSkipper} on the Vector API: every step loads as many bytes as the widest vector of the CPU holds
+ * (16 to 64), classifies all of them with a few lane-wise compares and finds the first byte ending the run in
+ * the resulting mask. The last partial vector is left to {@link ByteSkipper#SCALAR}.
+ * <p>
+ * Only loaded through {@link ByteSkipper#best()}, it doesn't link without {@code jdk.incubator.vector}.
+ */
+final class VectorSkipper implements ByteSkipper {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LENGTH = SPECIES.length();
+
+    @Override
+    public int skipWhitespace(ByteBuffer bytes, int from, int to) {
+        int i = from;
+        for (; i <= to - LENGTH; i += LENGTH) {
+            ByteVector v = load(bytes, i);
+            VectorMask<Byte> whitespace = v.eq((byte) ' ').or(v.eq((byte) '\n'))
+                    .or(v.eq((byte) '\t')).or(v.eq((byte) '\r'));
+            if (!whitespace.allTrue()) return i + whitespace.not().firstTrue();
+        }
+        return SCALAR.skipWhitespace(bytes, i, to);
+    }
+
+    @Override
+    public int skipIdentifier(ByteBuffer bytes, int from, int to) {
+        int i = from;
+        for (; i <= to - LENGTH; i += LENGTH) {
+            ByteVector v = load(bytes, i);
+            // Setting bit 5 maps 'A'-'Z' to 'a'-'z' and nothing else into that range.
+            ByteVector lower = v.or((byte) 0x20);
+            VectorMask<Byte> identifier = lower.compare(VectorOperators.GE, (byte) 'a')
+                    .and(lower.compare(VectorOperators.LE, (byte) 'z'))
+                    .or(v.compare(VectorOperators.GE, (byte) '0').and(v.compare(VectorOperators.LE, (byte) '9')))
+                    .or(v.eq((byte) '_'));
+            if (!identifier.allTrue()) return i + identifier.not().firstTrue();
+        }
+        return SCALAR.skipIdentifier(bytes, i, to);
+    }
+
+    @Override
+    public int indexOf(ByteBuffer bytes, int from, int to, byte target) {
+        int i = from;
+        for (; i <= to - LENGTH; i += LENGTH) {
+            VectorMask<Byte> found = load(bytes, i).eq(target);
+            if (found.anyTrue()) return i + found.firstTrue();
+        }
+        return SCALAR.indexOf(bytes, i, to, target);
+    }
+
+    @Override
+    public int count(ByteBuffer bytes, int from, int to, byte target) {
+        int count = 0;
+        int i = from;
+        for (; i <= to - LENGTH; i += LENGTH) {
+            count += load(bytes, i).eq(target).trueCount();
+        }
+        return count + SCALAR.count(bytes, i, to, target);
+    }
+
+    private static ByteVector load(ByteBuffer bytes, int offset) {
+        return ByteVector.fromByteBuffer(SPECIES, bytes, offset, ByteOrder.nativeOrder());
+    }
+}
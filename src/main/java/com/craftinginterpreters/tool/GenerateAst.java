@@ -3,6 +3,7 @@ package com.craftinginterpreters.tool;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -21,7 +22,15 @@ public class GenerateAst {
                 "Binary : Expr left, Token operator, Expr right",
                 "Grouping : Expr expression",
                 "Literal : Object value",
-                "Unary : Token operator, Expr right"
+                "Unary : Token operator, Expr right",
+                "Variable : Token name"
+        ));
+        defineArena(outputDir, "Expr", Arrays.asList(
+                "Binary : Expr left, Token operator, Expr right",
+                "Grouping : Expr expression",
+                "Literal : Object value",
+                "Unary : Token operator, Expr right",
+                "Variable : Token name"
         ));
     }
 
@@ -32,6 +41,7 @@ public class GenerateAst {
         writer.println("package com.craftinginterpreters.lox;");
         writer.println();
         writer.println("import java.util.List;");
+        writer.println("import java.util.Objects;");
         writer.println();
         writer.println("abstract class " + baseName + " {");
 
@@ -48,6 +58,8 @@ public class GenerateAst {
         writer.println();
         writer.println(" abstract <R> R accept(Visitor<R> visitor);");
 
+        defineHashing(writer);
+
         writer.println("}");
         writer.close();
 
@@ -92,6 +104,485 @@ public class GenerateAst {
                 fields) {
             writer.println(" final " + field + ";");
         }
+
+        defineEquality(writer, className, fields);
+        writer.println(" }");
+    }
+
+    /**
+     * Structural equality: child nodes and literal values are compared with equals(), tokens by type and
+     * lexeme, so the same code on different lines is equal.
+     */
+    private static void defineEquality(PrintWriter writer, String className, String[] fields) {
+        writer.println();
+        writer.println(" @Override");
+        writer.println(" public boolean equals(Object o) {");
+        writer.println(" if (this == o) return true;");
+        writer.println(" if (!(o instanceof " + className + ")) return false;");
+        writer.println(" " + className + " other = (" + className + ") o;");
+        writer.println(" if (hashCode() != other.hashCode()) return false;");
+        StringBuilder equals = new StringBuilder();
+        for (String field : fields) {
+            String type = field.split(" ")[0];
+            String name = field.split(" ")[1];
+            if (equals.length() > 0) {
+                equals.append(" && ");
+            }
+            if (type.equals("Token")) {
+                equals.append("sameToken(").append(name).append(", other.").append(name).append(")");
+            } else {
+                equals.append("Objects.equals(").append(name).append(", other.").append(name).append(")");
+            }
+        }
+        writer.println(" return " + equals + ";");
         writer.println(" }");
+        writer.println();
+
+        // Combined by hand, Objects.hash() would allocate a varargs array per node.
+        writer.println(" @Override");
+        writer.println(" int computeHash() {");
+        writer.println(" int h = " + className + ".class.hashCode();");
+        for (String field : fields) {
+            String type = field.split(" ")[0];
+            String name = field.split(" ")[1];
+            if (type.equals("Token")) {
+                writer.println(" h = 31 * h + " + name + ".type.hashCode();");
+                writer.println(" h = 31 * h + " + name + ".lexeme.hashCode();");
+            } else {
+                writer.println(" h = 31 * h + Objects.hashCode(" + name + ");");
+            }
+        }
+        writer.println(" return h;");
+        writer.println(" }");
+    }
+
+    private static void defineHashing(PrintWriter writer) {
+        writer.println();
+        writer.println(" /**");
+        writer.println(" * Cached structural hash, 0 until first computed.");
+        writer.println(" */");
+        writer.println(" private int hash;");
+        writer.println();
+        writer.println(" abstract int computeHash();");
+        writer.println();
+        writer.println(" @Override");
+        writer.println(" public final int hashCode() {");
+        writer.println(" int h = hash;");
+        writer.println(" if (h == 0) {");
+        writer.println(" h = computeHash();");
+        writer.println(" hash = h;");
+        writer.println(" }");
+        writer.println(" return h;");
+        writer.println(" }");
+        writer.println();
+        writer.println(" /**");
+        writer.println(" * Cached {@link NumberEvaluator#isNumeric}, 0 until first computed. The trees are immutable, so it never");
+        writer.println(" * changes once set.");
+        writer.println(" */");
+        writer.println(" byte numeric;");
+        writer.println();
+        writer.println(" static boolean sameToken(Token a, Token b) {");
+        writer.println(" return a.type == b.type && a.lexeme.equals(b.lexeme);");
+        writer.println(" }");
+    }
+
+    /**
+     * Emits {@code <baseName>Arena}, the flat encoding of the same nodes: every node is an id into parallel
+     * arrays holding its kind, the ids of its child nodes, and the indexes of its tokens and other values in two
+     * pools. Fields are stored by position among the fields of the same category, so {@code Binary.right} is
+     * child 1 and {@code Unary.right} child 0.
+     */
+    private static void defineArena(String outputDir, String baseName, List<String> types)
+            throws FileNotFoundException, UnsupportedEncodingException {
+        String arenaName = baseName + "Arena";
+        List<ArenaType> arenaTypes = new ArrayList<>();
+        int children = 0;
+        int tokens = 0;
+        int values = 0;
+        for (String type : types) {
+            ArenaType arenaType = new ArenaType(baseName, type);
+            arenaTypes.add(arenaType);
+            children = Math.max(children, arenaType.count(ArenaField.CHILD));
+            tokens = Math.max(tokens, arenaType.count(ArenaField.TOKEN));
+            values = Math.max(values, arenaType.count(ArenaField.VALUE));
+        }
+
+        PrintWriter writer = new PrintWriter(outputDir + "/" + arenaName + ".java", "UTF-8");
+        writer.println("package com.craftinginterpreters.lox;");
+        writer.println();
+        writer.println("import java.util.Arrays;");
+        writer.println();
+        writer.println("/**");
+        writer.println(" * Flat encoding of {@link " + baseName + "} trees, generated by {@code GenerateAst}.");
+        writer.println(" * <p>");
+        writer.println(" * A node is an id into parallel arrays: its kind, the ids of its child nodes, and the indexes of its");
+        writer.println(" * tokens and other values in two pools. A tree costs a few arrays instead of an object per node, and");
+        writer.println(" * traversals read consecutive memory. Children are always added before their parents, so they have");
+        writer.println(" * smaller ids and {@link #reduce(PostOrderVisitor)} can visit a tree in a single loop.");
+        writer.println(" */");
+        writer.println("final class " + arenaName + " {");
+        for (int i = 0; i < arenaTypes.size(); i++) {
+            writer.println("    static final byte " + arenaTypes.get(i).constant + " = " + i + ";");
+        }
+        writer.println();
+        writer.println("    private byte[] kinds;");
+        for (int i = 0; i < children; i++) writer.println("    private int[] child" + i + ";");
+        for (int i = 0; i < tokens; i++) writer.println("    private int[] token" + i + ";");
+        for (int i = 0; i < values; i++) writer.println("    private int[] value" + i + ";");
+        writer.println("    private int size = 0;");
+        writer.println("    private Token[] tokenPool;");
+        writer.println("    private int tokenCount = 0;");
+        writer.println("    private Object[] valuePool;");
+        writer.println("    private int valueCount = 0;");
+        writer.println();
+        writer.println("    " + arenaName + "() {");
+        writer.println("        this(16);");
+        writer.println("    }");
+        writer.println();
+        writer.println("    " + arenaName + "(int capacity) {");
+        writer.println("        capacity = Math.max(capacity, 1);");
+        writer.println("        kinds = new byte[capacity];");
+        for (int i = 0; i < children; i++) writer.println("        child" + i + " = new int[capacity];");
+        for (int i = 0; i < tokens; i++) writer.println("        token" + i + " = new int[capacity];");
+        for (int i = 0; i < values; i++) writer.println("        value" + i + " = new int[capacity];");
+        writer.println("        tokenPool = new Token[capacity];");
+        writer.println("        valuePool = new Object[capacity];");
+        writer.println("    }");
+
+        // Visitors.
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Visits a node by id, the fields are read through the accessors of the arena.");
+        writer.println("     */");
+        writer.println("    interface Visitor<R> {");
+        for (ArenaType type : arenaTypes) {
+            writer.println("        R visit" + type.name + baseName + "(int id);");
+            if (type != arenaTypes.get(arenaTypes.size() - 1)) writer.println();
+        }
+        writer.println("    }");
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Computes the result of a node from the results of its children.");
+        writer.println("     */");
+        writer.println("    interface PostOrderVisitor<R> {");
+        for (ArenaType type : arenaTypes) {
+            StringBuilder parameters = new StringBuilder("int id");
+            for (ArenaField field : type.fields) {
+                if (field.category == ArenaField.CHILD) parameters.append(", R ").append(field.name);
+            }
+            writer.println("        R visit" + type.name + baseName + "(" + parameters + ");");
+            if (type != arenaTypes.get(arenaTypes.size() - 1)) writer.println();
+        }
+        writer.println("    }");
+
+        // Builders.
+        for (ArenaType type : arenaTypes) {
+            StringBuilder parameters = new StringBuilder();
+            for (ArenaField field : type.fields) {
+                if (parameters.length() > 0) parameters.append(", ");
+                parameters.append(field.category == ArenaField.CHILD ? "int" : field.type).append(" ").append(field.name);
+            }
+            writer.println();
+            writer.println("    /**");
+            writer.println("     * Adds a {@code " + type.name + "} node, its children must already be in the arena.");
+            writer.println("     * @return The id of the node");
+            writer.println("     */");
+            writer.println("    int " + type.builder + "(" + parameters + ") {");
+            for (ArenaField field : type.fields) {
+                if (field.category == ArenaField.CHILD) writer.println("        checkId(" + field.name + ");");
+            }
+            writer.println("        int id = newNode(" + type.constant + ");");
+            for (ArenaField field : type.fields) {
+                switch (field.category) {
+                    case ArenaField.CHILD:
+                        writer.println("        child" + field.slot + "[id] = " + field.name + ";");
+                        break;
+                    case ArenaField.TOKEN:
+                        writer.println("        token" + field.slot + "[id] = addToken(" + field.name + ");");
+                        break;
+                    default:
+                        writer.println("        value" + field.slot + "[id] = addValue(" + field.name + ");");
+                        break;
+                }
+            }
+            writer.println("        return id;");
+            writer.println("    }");
+        }
+
+        // Accessors.
+        writer.println();
+        writer.println("    int size() {");
+        writer.println("        return size;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    byte kind(int id) {");
+        writer.println("        return kinds[id];");
+        writer.println("    }");
+        for (ArenaType type : arenaTypes) {
+            for (ArenaField field : type.fields) {
+                String accessor = type.builder + Character.toUpperCase(field.name.charAt(0)) + field.name.substring(1);
+                writer.println();
+                switch (field.category) {
+                    case ArenaField.CHILD:
+                        writer.println("    int " + accessor + "(int id) {");
+                        writer.println("        return child" + field.slot + "[id];");
+                        break;
+                    case ArenaField.TOKEN:
+                        writer.println("    Token " + accessor + "(int id) {");
+                        writer.println("        return tokenPool[token" + field.slot + "[id]];");
+                        break;
+                    default:
+                        writer.println("    " + field.type + " " + accessor + "(int id) {");
+                        writer.println("        return " + (field.type.equals("Object") ? "" : "(" + field.type + ") ")
+                                + "valuePool[value" + field.slot + "[id]];");
+                        break;
+                }
+                writer.println("    }");
+            }
+        }
+
+        // Dispatch and traversals.
+        writer.println();
+        writer.println("    <R> R accept(int id, Visitor<R> visitor) {");
+        writer.println("        switch (kinds[id]) {");
+        for (ArenaType type : arenaTypes) {
+            writer.println("            case " + type.constant + ":");
+            writer.println("                return visitor.visit" + type.name + baseName + "(id);");
+        }
+        writer.println("            default:");
+        writer.println("                throw new IllegalStateException(\"Unknown kind \" + kinds[id] + \".\");");
+        writer.println("        }");
+        writer.println("    }");
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Visits the tree of the root in post-order with an explicit stack, so trees of any depth can be visited.");
+        writer.println("     * @return The result of the root");
+        writer.println("     */");
+        writer.println("    @SuppressWarnings(\"unchecked\")");
+        writer.println("    <R> R walk(int root, PostOrderVisitor<R> visitor) {");
+        writer.println("        checkId(root);");
+        writer.println("        int[] nodes = new int[16];");
+        writer.println("        // Whether the children of the node are already on the stack.");
+        writer.println("        boolean[] expanded = new boolean[16];");
+        writer.println("        int depth = 0;");
+        writer.println("        Object[] results = new Object[16];");
+        writer.println("        int count = 0;");
+        writer.println("        nodes[depth++] = root;");
+        writer.println("        while (depth > 0) {");
+        writer.println("            int id = nodes[depth - 1];");
+        writer.println("            if (!expanded[depth - 1]) {");
+        writer.println("                expanded[depth - 1] = true;");
+        writer.println("                if (depth + " + children + " > nodes.length) {");
+        writer.println("                    nodes = Arrays.copyOf(nodes, nodes.length * 2);");
+        writer.println("                    expanded = Arrays.copyOf(expanded, expanded.length * 2);");
+        writer.println("                }");
+        writer.println("                // The last child goes first, so the first one is on top and visited first.");
+        writer.println("                switch (kinds[id]) {");
+        for (ArenaType type : arenaTypes) {
+            int count = type.count(ArenaField.CHILD);
+            if (count == 0) continue;
+            writer.println("                    case " + type.constant + ":");
+            for (int i = count - 1; i >= 0; i--) {
+                writer.println("                        nodes[depth] = child" + i + "[id];");
+                writer.println("                        expanded[depth++] = false;");
+            }
+            writer.println("                        continue;");
+        }
+        writer.println("                }");
+        writer.println("            }");
+        writer.println("            depth--;");
+        writer.println("            R result;");
+        writer.println("            switch (kinds[id]) {");
+        for (ArenaType type : arenaTypes) {
+            writer.println("                case " + type.constant + ": {");
+            int count = type.count(ArenaField.CHILD);
+            StringBuilder arguments = new StringBuilder("id");
+            for (int i = count - 1; i >= 0; i--) {
+                writer.println("                    R " + type.childName(i) + " = (R) results[--count];");
+            }
+            for (int i = 0; i < count; i++) arguments.append(", ").append(type.childName(i));
+            writer.println("                    result = visitor.visit" + type.name + baseName + "(" + arguments + ");");
+            writer.println("                    break;");
+            writer.println("                }");
+        }
+        writer.println("                default:");
+        writer.println("                    throw new IllegalStateException(\"Unknown kind \" + kinds[id] + \".\");");
+        writer.println("            }");
+        writer.println("            if (count == results.length) results = Arrays.copyOf(results, count * 2);");
+        writer.println("            results[count++] = result;");
+        writer.println("        }");
+        writer.println("        return (R) results[0];");
+        writer.println("    }");
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Visits every node of the arena in id order, which visits children before their parents, without a");
+        writer.println("     * stack. Meant for an arena holding one tree: the nodes of every tree in the arena are visited.");
+        writer.println("     * @return The result of the last node added, the root when the arena holds one tree");
+        writer.println("     */");
+        writer.println("    @SuppressWarnings(\"unchecked\")");
+        writer.println("    <R> R reduce(PostOrderVisitor<R> visitor) {");
+        writer.println("        if (size == 0) throw new IllegalStateException(\"Empty arena.\");");
+        writer.println("        Object[] results = new Object[size];");
+        writer.println("        for (int id = 0; id < size; id++) {");
+        writer.println("            switch (kinds[id]) {");
+        for (ArenaType type : arenaTypes) {
+            StringBuilder arguments = new StringBuilder("id");
+            for (int i = 0; i < type.count(ArenaField.CHILD); i++) {
+                arguments.append(", (R) results[child").append(i).append("[id]]");
+            }
+            writer.println("                case " + type.constant + ":");
+            writer.println("                    results[id] = visitor.visit" + type.name + baseName + "(" + arguments + ");");
+            writer.println("                    break;");
+        }
+        writer.println("                default:");
+        writer.println("                    throw new IllegalStateException(\"Unknown kind \" + kinds[id] + \".\");");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println("        return (R) results[size - 1];");
+        writer.println("    }");
+
+        // Converters.
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Adds the nodes of a tree, children before parents, without recursion.");
+        writer.println("     * @return The id of the root");
+        writer.println("     */");
+        writer.println("    int add(" + baseName + " root) {");
+        writer.println("        return PostOrder.walk(root, new PostOrder.Visitor<Integer>() {");
+        for (ArenaType type : arenaTypes) {
+            StringBuilder parameters = new StringBuilder(baseName + "." + type.name + " " + baseName.toLowerCase());
+            StringBuilder arguments = new StringBuilder();
+            for (ArenaField field : type.fields) {
+                if (field.category == ArenaField.CHILD) parameters.append(", Integer ").append(field.name);
+                if (arguments.length() > 0) arguments.append(", ");
+                arguments.append(field.category == ArenaField.CHILD ? field.name : baseName.toLowerCase() + "." + field.name);
+            }
+            writer.println("            @Override");
+            writer.println("            public Integer visit" + type.name + baseName + "(" + parameters + ") {");
+            writer.println("                return " + type.builder + "(" + arguments + ");");
+            writer.println("            }");
+            if (type != arenaTypes.get(arenaTypes.size() - 1)) writer.println();
+        }
+        writer.println("        });");
+        writer.println("    }");
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Builds the " + baseName + " tree of a node, without recursion.");
+        writer.println("     */");
+        writer.println("    " + baseName + " to" + baseName + "(int root) {");
+        writer.println("        return walk(root, new PostOrderVisitor<" + baseName + ">() {");
+        for (ArenaType type : arenaTypes) {
+            StringBuilder parameters = new StringBuilder("int id");
+            StringBuilder arguments = new StringBuilder();
+            for (ArenaField field : type.fields) {
+                if (field.category == ArenaField.CHILD) parameters.append(", " + baseName + " ").append(field.name);
+                if (arguments.length() > 0) arguments.append(", ");
+                arguments.append(field.category == ArenaField.CHILD ? field.name
+                        : type.builder + Character.toUpperCase(field.name.charAt(0)) + field.name.substring(1) + "(id)");
+            }
+            writer.println("            @Override");
+            writer.println("            public " + baseName + " visit" + type.name + baseName + "(" + parameters + ") {");
+            writer.println("                return new " + baseName + "." + type.name + "(" + arguments + ");");
+            writer.println("            }");
+            if (type != arenaTypes.get(arenaTypes.size() - 1)) writer.println();
+        }
+        writer.println("        });");
+        writer.println("    }");
+
+        // Storage.
+        writer.println();
+        writer.println("    private int newNode(byte kind) {");
+        writer.println("        if (size == kinds.length) {");
+        writer.println("            int capacity = size * 2;");
+        writer.println("            kinds = Arrays.copyOf(kinds, capacity);");
+        for (int i = 0; i < children; i++) writer.println("            child" + i + " = Arrays.copyOf(child" + i + ", capacity);");
+        for (int i = 0; i < tokens; i++) writer.println("            token" + i + " = Arrays.copyOf(token" + i + ", capacity);");
+        for (int i = 0; i < values; i++) writer.println("            value" + i + " = Arrays.copyOf(value" + i + ", capacity);");
+        writer.println("        }");
+        writer.println("        kinds[size] = kind;");
+        writer.println("        return size++;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    private int addToken(Token token) {");
+        writer.println("        if (tokenCount == tokenPool.length) tokenPool = Arrays.copyOf(tokenPool, tokenCount * 2);");
+        writer.println("        tokenPool[tokenCount] = token;");
+        writer.println("        return tokenCount++;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    private int addValue(Object value) {");
+        writer.println("        if (valueCount == valuePool.length) valuePool = Arrays.copyOf(valuePool, valueCount * 2);");
+        writer.println("        valuePool[valueCount] = value;");
+        writer.println("        return valueCount++;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    private void checkId(int id) {");
+        writer.println("        if (id < 0 || id >= size) {");
+        writer.println("            throw new IllegalArgumentException(\"No node \" + id + \" in an arena of \" + size + \".\");");
+        writer.println("        }");
+        writer.println("    }");
+        writer.println("}");
+        writer.close();
+    }
+
+    /**
+     * A node type of the arena, parsed from the same description as the classes.
+     */
+    private static class ArenaType {
+        final String name;
+        final String constant;
+        final String builder;
+        final List<ArenaField> fields = new ArrayList<>();
+
+        ArenaType(String baseName, String description) {
+            name = description.split(":")[0].trim();
+            constant = name.toUpperCase();
+            builder = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+            int[] slots = new int[3];
+            for (String field : description.split(":")[1].trim().split(", ")) {
+                String type = field.split(" ")[0];
+                int category = type.equals(baseName) ? ArenaField.CHILD
+                        : type.equals("Token") ? ArenaField.TOKEN : ArenaField.VALUE;
+                fields.add(new ArenaField(type, field.split(" ")[1], category, slots[category]++));
+            }
+        }
+
+        int count(int category) {
+            int count = 0;
+            for (ArenaField field : fields) {
+                if (field.category == category) count++;
+            }
+            return count;
+        }
+
+        /**
+         * Name of the field of the child at the slot.
+         */
+        String childName(int slot) {
+            for (ArenaField field : fields) {
+                if (field.category == ArenaField.CHILD && field.slot == slot) return field.name;
+            }
+            throw new IllegalArgumentException(name + " has no child " + slot + ".");
+        }
+    }
+
+    private static class ArenaField {
+        static final int CHILD = 0;
+        static final int TOKEN = 1;
+        static final int VALUE = 2;
+
+        final String type;
+        final String name;
+        final int category;
+        /**
+         * Position among the fields of the same category.
+         */
+        final int slot;
+
+        ArenaField(String type, String name, int category, int slot) {
+            this.type = type;
+            this.name = name;
+            this.category = category;
+            this.slot = slot;
+        }
     }
 }
@@ -0,0 +1,124 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the vectorized {@link ByteSkipper} finds the same byte as {@link ByteSkipper#SCALAR} for runs
+ * ending at every position and for ranges starting and ending around every multiple of the vector lengths.
+ * Skipped when the JVM runs without {@code jdk.incubator.vector}.
+ */
+class ByteSkipperTest {
+    private static final int SIZE = 200;
+    /**
+     * Bytes that end a run of identifier bytes, including the neighbours of {@code [0-9]}, {@code [A-Z]} and
+     * {@code [a-z]} and bytes of multi-byte sequences.
+     */
+    private static final byte[] NOT_IDENTIFIER = {' ', '/', ':', '@', '[', '^', '`', '{', (byte) 0xC3, (byte) 0xA9};
+    private static final byte[] NOT_WHITESPACE = {'a', '/', '\u000B', '\f', '"', (byte) 0xE2};
+
+    private static ByteSkipper vector;
+    /**
+     * Offsets around every multiple of 16 up to {@link #SIZE}, the vector lengths are 16 to 64 bytes.
+     */
+    private static final TreeSet<Integer> OFFSETS = new TreeSet<>();
+
+    @BeforeAll
+    static void load() {
+        vector = ByteSkipper.best();
+        for (int i = 0; i <= SIZE; i += 16) {
+            for (int near = Math.max(0, i - 2); near <= Math.min(SIZE, i + 2); near++) OFFSETS.add(near);
+        }
+    }
+
+    private static ByteBuffer[] buffers(byte[] bytes) {
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        return new ByteBuffer[]{ByteBuffer.wrap(bytes), direct};
+    }
+
+    private interface Skip {
+        int skip(ByteSkipper skipper, ByteBuffer bytes, int from, int to);
+    }
+
+    /**
+     * Compares both skippers over every range of offsets, on a heap and on a direct buffer.
+     */
+    private static void assertAgree(byte[] bytes, Skip skip, String what) {
+        for (ByteBuffer buffer : buffers(bytes)) {
+            for (int from : OFFSETS) {
+                for (int to : OFFSETS.tailSet(from)) {
+                    assertEquals(skip.skip(ByteSkipper.SCALAR, buffer, from, to), skip.skip(vector, buffer, from, to),
+                            () -> what + " from " + from + " to " + to + (buffer.isDirect() ? ", direct" : ", heap"));
+                }
+            }
+        }
+    }
+
+    private static byte[] filled(char filler) {
+        byte[] bytes = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) bytes[i] = (byte) filler;
+        return bytes;
+    }
+
+    @Test
+    void skipWhitespaceAgrees() {
+        assumeTrue(vector != ByteSkipper.SCALAR, "no jdk.incubator.vector");
+        String whitespace = " \t\r\n";
+        for (byte stop : NOT_WHITESPACE) {
+            for (int end = 0; end < SIZE; end++) {
+                byte[] bytes = new byte[SIZE];
+                for (int i = 0; i < SIZE; i++) bytes[i] = (byte) whitespace.charAt(i % whitespace.length());
+                bytes[end] = stop;
+                assertAgree(bytes, ByteSkipper::skipWhitespace, "stop " + stop + " at " + end);
+            }
+        }
+    }
+
+    @Test
+    void skipIdentifierAgrees() {
+        assumeTrue(vector != ByteSkipper.SCALAR, "no jdk.incubator.vector");
+        String identifier = "azAZ09_mQ5";
+        for (byte stop : NOT_IDENTIFIER) {
+            for (int end = 0; end < SIZE; end++) {
+                byte[] bytes = new byte[SIZE];
+                for (int i = 0; i < SIZE; i++) bytes[i] = (byte) identifier.charAt(i % identifier.length());
+                bytes[end] = stop;
+                assertAgree(bytes, ByteSkipper::skipIdentifier, "stop " + stop + " at " + end);
+            }
+        }
+    }
+
+    @Test
+    void indexOfAgrees() {
+        assumeTrue(vector != ByteSkipper.SCALAR, "no jdk.incubator.vector");
+        for (int end = 0; end < SIZE; end++) {
+            byte[] bytes = filled('x');
+            bytes[end] = '"';
+            assertAgree(bytes, (skipper, buffer, from, to) -> skipper.indexOf(buffer, from, to, (byte) '"'),
+                    "quote at " + end);
+        }
+        assertAgree(filled('x'), (skipper, buffer, from, to) -> skipper.indexOf(buffer, from, to, (byte) '"'),
+                "no quote");
+    }
+
+    @Test
+    void countAgrees() {
+        assumeTrue(vector != ByteSkipper.SCALAR, "no jdk.incubator.vector");
+        Random random = new Random(24);
+        for (int round = 0; round < 50; round++) {
+            byte[] bytes = filled(' ');
+            for (int i = 0; i < SIZE; i++) {
+                if (random.nextInt(round % 5 + 2) == 0) bytes[i] = '\n';
+            }
+            assertAgree(bytes, (skipper, buffer, from, to) -> skipper.count(buffer, from, to, (byte) '\n'),
+                    "round " + round);
+        }
+    }
+}
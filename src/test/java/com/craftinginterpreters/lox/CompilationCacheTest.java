@@ -0,0 +1,118 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stores and loads trees in a {@link CompilationCache} in a temporary directory.
+ */
+class CompilationCacheTest {
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String source) {
+        return source.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Expr> parse(String source) {
+        CompileResult result = new LoxCompiler().compile(source);
+        assertFalse(result.hasErrors());
+        return result.statements();
+    }
+
+    @Test
+    void storedTreesLoadAgain() {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        String source = "1 + 2;\n-\"a\" == nil;\n";
+        assertNull(cache.load(bytes(source)));
+        cache.store(bytes(source), parse(source));
+        assertArrayEquals(AstSerializer.serialize(parse(source)), AstSerializer.serialize(cache.load(bytes(source))));
+    }
+
+    @Test
+    void damagedEntryIsAMissAndDeleted() throws IOException {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        byte[] source = bytes("1;");
+        Path entry = directory.resolve(CompilationCache.key(source) + ".ast");
+        Files.write(entry, new byte[]{AstSerializer.VERSION, 1, 2, 3});
+        assertNull(cache.load(source));
+        assertFalse(Files.exists(entry));
+    }
+
+    @Test
+    void keyDependsOnMoreThanTheBytes() throws Exception {
+        byte[] source = bytes("1;");
+        String plain = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(source));
+        assertNotEquals(plain, CompilationCache.key(source));
+        assertEquals(CompilationCache.key(source), CompilationCache.key(bytes("1;")));
+        assertNotEquals(CompilationCache.key(source), CompilationCache.key(bytes("2;")));
+    }
+
+    private long temps() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count();
+        }
+    }
+
+    @Test
+    void failedStoreLeavesNoTemporaryFile() throws IOException {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        byte[] source = bytes("1;");
+        // A non-empty directory where the entry goes makes the move fail.
+        Path entry = directory.resolve(CompilationCache.key(source) + ".ast");
+        Files.createDirectories(entry.resolve("in-the-way"));
+        cache.store(source, parse("1;"));
+        assertEquals(0, temps());
+        assertNull(cache.load(source));
+    }
+
+    @Test
+    void staleTemporaryFilesAreDeleted() throws IOException {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        Path stale = Files.createTempFile(directory, "entry", ".tmp");
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+        Path young = Files.createTempFile(directory, "entry", ".tmp");
+        cache.store(bytes("1;"), parse("1;"));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(young));
+    }
+
+    @Test
+    void deepTreesRoundTrip() {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        int depth = 200_000;
+        String source = "(".repeat(depth) + "1" + " + 1)".repeat(depth) + ";\n" + "-!".repeat(depth) + "nil;";
+        List<Expr> statements = parse(source);
+        byte[] expected = AstSerializer.serialize(statements);
+        cache.store(bytes(source), statements);
+        assertArrayEquals(expected, AstSerializer.serialize(cache.load(bytes(source))));
+    }
+
+    @Test
+    void evictionKeepsTheCacheBounded() throws IOException {
+        long entry = AstSerializer.serialize(parse("1000;")).length;
+        CompilationCache cache = new CompilationCache(directory, 5 * entry);
+        for (int i = 1000; i < 1050; i++) {
+            String source = i + ";";
+            cache.store(bytes(source), parse(source));
+        }
+        long total;
+        try (Stream<Path> files = Files.list(directory)) {
+            total = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+        assertTrue(total <= 5 * entry, total + " bytes");
+        assertNotNull(cache.load(bytes("1049;")));
+    }
+}
@@ -0,0 +1,118 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Applies random edits to random sources and checks that {@link IncrementalParser} always has the tokens, trees,
+ * lines and errors of a fresh {@link Scanner} and {@link Parser} run over the whole new source.
+ */
+class IncrementalParserTest {
+    /**
+     * Pieces the sources and edits are made of: tokens, fragments of tokens, unterminated strings and comments,
+     * newlines inside strings and comments, and characters the scanner rejects.
+     */
+    private static final String[] PIECES = {
+            "1", "23", "4.5", "6.", ".", "+", "-", "*", "/", "(", ")", ";", ";", ";", "!", "==", "!=", "=", "<",
+            "<=", ">", ">=", " ", " ", "\n", "\t", "\"s\"", "\"a\nb\"", "\"", "//c\n", "/*x*/", "/*", "*/",
+            "true", "false", "nil", "var", "print", "@", "foo", "fo", "o"
+    };
+
+    private static String random(Random random, int pieces) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            builder.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void randomEditsMatchAFullParse() {
+        Random random = new Random(18);
+        for (int document = 0; document < 600; document++) {
+            IncrementalParser parser = new IncrementalParser(random(random, random.nextInt(200)));
+            assertSameAsFullParse(parser, "document " + document);
+            for (int edit = 0; edit < 30; edit++) {
+                String source = parser.source();
+                int offset = random.nextInt(source.length() + 1);
+                int removed = random.nextInt(Math.min(4, source.length() - offset) + 1);
+                String inserted = random.nextInt(3) == 0 ? "" : random(random, 1 + random.nextInt(3));
+                parser.edit(offset, removed, inserted);
+                assertSameAsFullParse(parser, "document " + document + ", edit " + edit);
+            }
+        }
+    }
+
+    @Test
+    void newLineInALargeProgramReusesTheTreesWithTheirLinesShifted() {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            program.append(i).append(" * (").append(i % 7).append(" - 1) + ").append(i % 3).append(";\n");
+        }
+        IncrementalParser parser = new IncrementalParser(program.toString());
+        int middle = program.indexOf(";", program.length() / 2) + 1;
+
+        parser.edit(middle, 0, "\n\n");
+        assertSameAsFullParse(parser, "new lines");
+        assertTrue(parser.reparsedStatements() <= 2, "reparsed " + parser.reparsedStatements());
+
+        parser.edit(middle + 2, 1, "9");
+        assertSameAsFullParse(parser, "changed digit");
+        assertTrue(parser.rescannedTokens() < 10, "rescanned " + parser.rescannedTokens());
+    }
+
+    @Test
+    void openingAndClosingACommentRescansTheRest() {
+        IncrementalParser parser = new IncrementalParser("1 + 2;\n3 * 4;\n5 - 6;\n");
+        parser.edit(7, 0, "/*");
+        assertSameAsFullParse(parser, "opened");
+        parser.edit(parser.source().length(), 0, "*/ 7;");
+        assertSameAsFullParse(parser, "closed");
+        parser.edit(7, 2, "");
+        assertSameAsFullParse(parser, "removed");
+    }
+
+    @Test
+    void editOutsideTheSourceIsRejected() {
+        IncrementalParser parser = new IncrementalParser("1;");
+        assertThrows(IndexOutOfBoundsException.class, () -> parser.edit(1, 2, ""));
+        assertThrows(IndexOutOfBoundsException.class, () -> parser.edit(-1, 0, "2"));
+    }
+
+    private static void assertSameAsFullParse(IncrementalParser parser, String where) {
+        String source = parser.source();
+        Diagnostics scanErrors = new Diagnostics();
+        TokenBuffer expectedTokens = new Scanner(source, new SymbolTable(), scanErrors).scanTokenBuffer();
+        Diagnostics syntaxErrors = new Diagnostics();
+        List<Expr> expectedStatements = new Parser(expectedTokens).withReporter(syntaxErrors).parseProgram();
+
+        TokenBuffer tokens = parser.tokens();
+        assertEquals(expectedTokens.size(), tokens.size(), where + ": token count of\n" + source);
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = where + ": token " + i + " of\n" + source;
+            assertEquals(expectedTokens.type(i), tokens.type(i), token);
+            assertEquals(expectedTokens.start(i), tokens.start(i), token);
+            assertEquals(expectedTokens.end(i), tokens.end(i), token);
+            assertEquals(expectedTokens.line(i), tokens.line(i), token);
+            assertEquals(expectedTokens.lexeme(i), tokens.lexeme(i), token);
+        }
+
+        List<String> messages = new ArrayList<>(scanErrors.messages());
+        messages.addAll(syntaxErrors.messages());
+        assertEquals(messages, parser.messages(), where + ": errors of\n" + source);
+
+        List<Expr> statements = parser.statements();
+        if (!messages.isEmpty()) {
+            assertTrue(statements.isEmpty(), where + ": trees despite errors");
+            return;
+        }
+        // The serialized form has the line of every operator.
+        assertArrayEquals(AstSerializer.serialize(expectedStatements), AstSerializer.serialize(new ArrayList<>(statements)),
+                where + ": trees of\n" + source);
+    }
+}
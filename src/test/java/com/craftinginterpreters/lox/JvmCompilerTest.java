@@ -0,0 +1,106 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiles random trees with {@link JvmCompiler} and checks that the classes give the values and runtime errors
+ * of the {@link Interpreter}, including trees split over several methods.
+ */
+class JvmCompilerTest {
+    private static final String[] LITERALS = {"1", "0", "-0", "2.5", "true", "false", "nil", "\"a\"", "\"b\""};
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "<", "<=", ">", ">=", "==", "!="};
+
+    /**
+     * A source of about {@code nodes} nodes, with newlines between the tokens so errors are on different lines.
+     */
+    private static void random(Random random, int nodes, StringBuilder source) {
+        if (random.nextInt(8) == 0) source.append('\n');
+        if (nodes <= 1) {
+            source.append(LITERALS[random.nextInt(LITERALS.length)]);
+            return;
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                source.append(random.nextBoolean() ? "-" : "!");
+                random(random, nodes - 1, source);
+                break;
+            case 1:
+                source.append('(');
+                random(random, nodes - 1, source);
+                source.append(')');
+                break;
+            default:
+                int left = 1 + random.nextInt(nodes - 1);
+                random(random, left, source);
+                source.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+                random(random, nodes - left, source);
+        }
+    }
+
+    private static Expr parse(String source) {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = new Scanner(source, new SymbolTable(), diagnostics).scanTokenBuffer();
+        Expr expr = new Parser(tokens).withReporter(diagnostics).parse();
+        assertFalse(diagnostics.hadError(), () -> String.join("\n", diagnostics.messages()));
+        return expr;
+    }
+
+    private static String outcome(Supplier<Object> evaluation) {
+        try {
+            return Interpreter.stringify(evaluation.get());
+        } catch (RuntimeError error) {
+            return "error '" + error.getMessage() + "' at '" + error.token.lexeme + "' line " + error.token.line;
+        }
+    }
+
+    private static int nodes(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            return 1 + nodes(((Expr.Binary) expr).left) + nodes(((Expr.Binary) expr).right);
+        } else if (expr instanceof Expr.Unary) {
+            return 1 + nodes(((Expr.Unary) expr).right);
+        } else if (expr instanceof Expr.Grouping) {
+            return 1 + nodes(((Expr.Grouping) expr).expression);
+        }
+        return 1;
+    }
+
+    private static void assertSameAsInterpreter(Random random, int trees, int maxNodes) {
+        JvmCompiler compiler = new JvmCompiler();
+        for (int i = 0; i < trees; i++) {
+            StringBuilder source = new StringBuilder();
+            random(random, 1 + random.nextInt(maxNodes), source);
+            Expr expr = parse(source.toString());
+            CompiledExpr code = compiler.compile(expr);
+            assertEquals(outcome(() -> new Interpreter().evaluate(expr)), outcome(code::evaluate),
+                    () -> "tree " + nodes(expr) + " nodes:\n" + source);
+        }
+    }
+
+    @Test
+    void smallTreesMatchTheInterpreter() {
+        assertSameAsInterpreter(new Random(13), 5000, 30);
+    }
+
+    @Test
+    void treesSplitOverSeveralMethodsMatchTheInterpreter() {
+        assertSameAsInterpreter(new Random(256), 200, 8 * JvmCompiler.METHOD_NODES);
+    }
+
+    @Test
+    void errorInASplitOffMethodHasItsLine() {
+        StringBuilder source = new StringBuilder("1");
+        for (int i = 0; i < 3 * JvmCompiler.METHOD_NODES; i++) {
+            source.append(" +\n1");
+        }
+        source.append(" + -nil");
+        Expr expr = parse(source.toString());
+        String expected = outcome(() -> new Interpreter().evaluate(expr));
+        assertTrue(expected.endsWith("line " + (3 * JvmCompiler.METHOD_NODES + 1)), expected);
+        assertEquals(expected, outcome(new JvmCompiler().compile(expr)::evaluate));
+    }
+}
@@ -0,0 +1,88 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scans sources in tiny chunks with {@link ParallelScanner} and checks that the tokens and errors are the ones of
+ * a single {@link Scanner}, whatever the naive chunk boundaries fall into.
+ */
+class ParallelScannerTest {
+    /**
+     * Strings and comments spanning lines, two-character operators, unterminated literals and rejected
+     * characters, so chunk targets land inside all of them.
+     */
+    private static final String[] PIECES = {
+            "1", "2.5", "+", "-", "/", "*", "(", ")", ";", "!=", "==", "<=", ">=", "!", "=", "<", ">", " ", "\n",
+            "\n", "\"s\"", "\"a\nb\nc\"", "// c\n", "/* x\ny */", "/*\n\n*/", "foo", "nil", "@", "\"", "/*"
+    };
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void start() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stop() {
+        pool.shutdown();
+    }
+
+    private static void assertSameAsScanner(String source, int chunkSize) {
+        Diagnostics expectedErrors = new Diagnostics();
+        List<Token> expected = new Scanner(source, null, expectedErrors).scanTokens();
+        Diagnostics errors = new Diagnostics();
+        List<Token> tokens = new ParallelScanner(pool, chunkSize).withReporter(errors).scanTokens(source);
+
+        String where = "chunk size " + chunkSize + " of\n" + source;
+        assertEquals(expected.size(), tokens.size(), where);
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            Token expectedToken = expected.get(i);
+            String at = "token " + i + ", " + where;
+            assertEquals(expectedToken.type, token.type, at);
+            assertEquals(expectedToken.lexeme, token.lexeme, at);
+            assertEquals(expectedToken.literal, token.literal, at);
+            assertEquals(expectedToken.line, token.line, at);
+        }
+        assertEquals(expectedErrors.messages(), errors.messages(), where);
+    }
+
+    @Test
+    void randomSourcesScanLikeOneScanner() {
+        Random random = new Random(5);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder source = new StringBuilder();
+            int pieces = 20 + random.nextInt(200);
+            for (int i = 0; i < pieces; i++) {
+                source.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            assertSameAsScanner(source.toString(), 1 + random.nextInt(40));
+        }
+    }
+
+    @Test
+    void boundaryInsideAStringOrCommentMovesPastIt() {
+        String line = "1 + 2;\n";
+        assertSameAsScanner(line.repeat(4) + "\"one\ntwo\nthree\"\n" + line.repeat(4), 8);
+        assertSameAsScanner(line.repeat(4) + "/* one\ntwo\nthree */\n" + line.repeat(4), 8);
+        assertSameAsScanner(line.repeat(4) + "3 <=\n= 4 !\n= 5;\n" + line.repeat(4), 8);
+        assertSameAsScanner(line.repeat(4) + "\"open\n" + line.repeat(4), 8);
+    }
+
+    @Test
+    void errorsGoToTheGivenReporter() {
+        Diagnostics errors = new Diagnostics();
+        new ParallelScanner(pool, 4).withReporter(errors).scanTokens("1;\n@;\n2;\n3;\n#;\n4;\n");
+        assertEquals(List.of("[line 2] Error: Unexpected character.", "[line 5] Error: Unexpected character."),
+                errors.messages());
+    }
+}
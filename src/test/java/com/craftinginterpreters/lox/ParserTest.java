@@ -0,0 +1,102 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the trees and syntax errors of {@link Parser} over its token sources.
+ */
+class ParserTest {
+    private static final String PROGRAM = "1 + 2 * -3;\n(4 - \"a\") == nil;\n!true != 5 / 6 <= 7;\n";
+
+    @Test
+    void tokenListParsesLikeTheTokenBuffer() {
+        List<Token> list = new Scanner(PROGRAM, new SymbolTable(), new Diagnostics()).scanTokens();
+        TokenBuffer buffer = new Scanner(PROGRAM, new SymbolTable(), new Diagnostics()).scanTokenBuffer();
+        List<Expr> fromList = new Parser(list).withReporter(new Diagnostics()).parseProgram();
+        List<Expr> fromBuffer = new Parser(buffer).withReporter(new Diagnostics()).parseProgram();
+        assertEquals(3, fromList.size());
+        assertArrayEquals(AstSerializer.serialize(fromBuffer), AstSerializer.serialize(fromList));
+    }
+
+    @Test
+    void everyBrokenStatementHasExactlyOneError() {
+        String source = "1 + ;\n2 * 3;\n(4 - ) ) );\n5 5 5;\n6 == ;\n7;\n";
+        Diagnostics diagnostics = new Diagnostics();
+        Parser parser = new Parser(new Scanner(source, new SymbolTable(), diagnostics).scanTokenBuffer())
+                .withReporter(diagnostics);
+        List<Expr> statements = new ArrayList<>();
+        while (!parser.isAtEnd()) statements.add(parser.statement());
+
+        assertEquals(List.of(
+                "[line 1] Error at ';': Expect expression.",
+                "[line 3] Error at ')': Expect expression.",
+                "[line 4] Error at '5': Expect ';' after expression.",
+                "[line 5] Error at ';': Expect expression."), diagnostics.messages());
+        assertEquals(6, statements.size());
+        assertNull(statements.get(0));
+        assertEquals("(* 2.0 3.0)", new AstPrinter().print(statements.get(1)));
+        assertNull(statements.get(2));
+        assertNull(statements.get(3));
+        assertNull(statements.get(4));
+        assertEquals("7.0", new AstPrinter().print(statements.get(5)));
+        assertTrue(parser.errorCount() >= 4);
+    }
+
+    @Test
+    void recoveryResumesAfterTheSemicolon() {
+        String source = "1 + + 2 3;\n4;";
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = new Scanner(source, new SymbolTable(), diagnostics).scanTokenBuffer();
+        Parser parser = new Parser(tokens).withReporter(diagnostics);
+        assertNull(parser.statement());
+        assertEquals(TokenType.SEMICOLON, tokens.type(parser.position() - 1));
+        assertEquals("4", tokens.lexeme(parser.position()));
+        assertEquals("4.0", new AstPrinter().print(parser.statement()));
+        assertTrue(parser.isAtEnd());
+        assertEquals(1, diagnostics.messages().size());
+    }
+
+    @Test
+    void brokenProgramsGiveNoTrees() {
+        String source = "1 + 2;\n3 * ;\n4;";
+        Diagnostics diagnostics = new Diagnostics();
+        List<Expr> statements = new Parser(new Scanner(source, new SymbolTable(), diagnostics).scanTokenBuffer())
+                .withReporter(diagnostics).parseProgram();
+        assertTrue(statements.isEmpty());
+        assertNull(new Parser(new Scanner("(1 +", new SymbolTable(), new Diagnostics()).scanTokens())
+                .withReporter(new Diagnostics()).parse());
+
+        CompileResult result = new LoxCompiler().compile(source);
+        assertTrue(result.hasErrors());
+        assertTrue(result.statements().isEmpty());
+        assertEquals(List.of("[line 2] Error at ';': Expect expression."), result.messages());
+    }
+
+    @Test
+    void deeplyNestedStatementsDontOverflowTheStack() {
+        int depth = 200_000;
+        String source = "(".repeat(depth) + "1" + ")".repeat(depth) + ";\n"
+                + "-".repeat(depth) + "1;\n"
+                + "!(".repeat(depth) + "true" + ")".repeat(depth) + ";\n";
+        Diagnostics diagnostics = new Diagnostics();
+        Parser parser = new Parser(new Scanner(source, new SymbolTable(), diagnostics).scanTokenBuffer())
+                .withReporter(diagnostics);
+        assertTrue(parser.statement() instanceof Expr.Grouping);
+        assertTrue(parser.statement() instanceof Expr.Unary);
+        assertTrue(parser.statement() instanceof Expr.Unary);
+        assertTrue(parser.isAtEnd());
+        assertFalse(diagnostics.hadError());
+
+        Diagnostics unclosed = new Diagnostics();
+        Parser broken = new Parser(new Scanner("(".repeat(depth) + "1;\n2;", new SymbolTable(), unclosed)
+                .scanTokenBuffer()).withReporter(unclosed);
+        assertNull(broken.statement());
+        assertEquals("2.0", new AstPrinter().print(broken.statement()));
+        assertEquals(1, unclosed.messages().size());
+    }
+}
@@ -0,0 +1,46 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link TieredExecutor} gives the same values and errors in both tiers.
+ */
+class TieredExecutorTest {
+    private static List<Expr> parse(String source) {
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = new Scanner(source, new SymbolTable(), diagnostics).scanTokenBuffer();
+        List<Expr> statements = new Parser(tokens).withReporter(diagnostics).parseProgram();
+        assertFalse(diagnostics.hadError(), () -> String.join("\n", diagnostics.messages()));
+        return statements;
+    }
+
+    @Test
+    void sameFailingExpressionOnTwoLinesReportsEachLine() {
+        List<Expr> statements = parse("1 + -\"a\";\n1 + -\"a\";\n");
+        assertEquals(statements.get(0), statements.get(1));
+        TieredExecutor executor = new TieredExecutor(2);
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < statements.size(); i++) {
+                Expr statement = statements.get(i);
+                RuntimeError error = assertThrows(RuntimeError.class, () -> executor.evaluate(statement));
+                assertEquals(i + 1, error.token.line, "round " + round + ", tier " + executor.tier(statement));
+            }
+        }
+        assertEquals(1, executor.tier(statements.get(0)));
+        assertEquals(1, executor.tier(statements.get(1)));
+    }
+
+    @Test
+    void treeParsedAgainReusesTheCompiledClass() {
+        TieredExecutor executor = new TieredExecutor(3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(7.0, executor.evaluate(parse("1 + 2 * 3;").get(0)));
+        }
+        assertEquals(1, executor.tier(parse("1 + 2 * 3;").get(0)));
+        assertEquals(0, executor.tier(parse("\n1 + 2 * 3;").get(0)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link Utf8Scanner} on the UTF-8 bytes gives the tokens, lines and errors of {@link Scanner} on the
+ * decoded text, with multi-byte characters in strings, comments and where no token can start.
+ */
+class Utf8ScannerTest {
+    /**
+     * Two, three and four byte characters, the last one a surrogate pair in the decoded text.
+     */
+    private static final String[] PIECES = {
+            "1", "2.5", "+", "-", "/", "*", "(", ")", ";", "!=", "==", "<=", ">", " ", "\n", "foo", "and", "nil",
+            "\"é\"", "\"日本\n語\"", "\"😀\"", "// ü 😀\n", "/* ñ\n€ */", "é", "€", "😀", "\"", "/*", "\"a😀b\"",
+            "bar_9", "@"
+    };
+
+    private static void assertSameAsScanner(String source, ByteSkipper skipper) {
+        Diagnostics expectedErrors = new Diagnostics();
+        Scanner scanner = new Scanner(source, null, expectedErrors);
+        Diagnostics errors = new Diagnostics();
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        Utf8Scanner utf8 = new Utf8Scanner(ByteBuffer.wrap(bytes), null, errors).withSkipper(skipper);
+
+        for (int i = 0; ; i++) {
+            Token expected = scanner.nextToken();
+            Token token = utf8.nextToken();
+            String at = "token " + i + " of\n" + source;
+            assertEquals(expected.type, token.type, at);
+            assertEquals(expected.lexeme, token.lexeme, at);
+            assertEquals(expected.literal, token.literal, at);
+            assertEquals(expected.line, token.line, at);
+            if (expected.type == TokenType.EOF) break;
+        }
+        assertEquals(expectedErrors.messages(), errors.messages(), source);
+    }
+
+    @Test
+    void multiByteInputScansLikeTheDecodedText() {
+        Random random = new Random(23);
+        for (int round = 0; round < 3000; round++) {
+            StringBuilder source = new StringBuilder();
+            int pieces = random.nextInt(60);
+            for (int i = 0; i < pieces; i++) {
+                source.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            assertSameAsScanner(source.toString(), ByteSkipper.SCALAR);
+            assertSameAsScanner(source.toString(), ByteSkipper.best());
+        }
+    }
+
+    @Test
+    void longRunsAroundMultiByteCharacters() {
+        String padding = " ".repeat(70);
+        assertSameAsScanner("\"" + "é".repeat(100) + "\"" + padding + "\n" + "x".repeat(90) + "😀;", ByteSkipper.best());
+        assertSameAsScanner("// " + "日本語".repeat(40) + "\n1;/*" + "€\n".repeat(50) + "*/ 2", ByteSkipper.best());
+    }
+}
@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a {@link VM} reused for many chunks doesn't keep the values of the runs that finished.
+ */
+class VMTest {
+    private static Chunk compile(String source) {
+        Expr expr = new Parser(new Scanner(source, null, new Diagnostics()).scanTokens())
+                .withReporter(new Diagnostics()).parse();
+        return new BytecodeCompiler().compile(expr);
+    }
+
+    private static boolean collected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        return reference.get() == null;
+    }
+
+    @Test
+    void finishedRunKeepsNoValues() throws InterruptedException {
+        VM vm = new VM();
+        WeakReference<Object> result = new WeakReference<>(vm.run(compile("\"a\" + \"b\" + \"c\"")));
+        assertTrue(collected(result));
+        assertEquals(3.0, vm.run(compile("1 + 2")));
+    }
+
+    @Test
+    void failedRunKeepsNoValues() throws InterruptedException {
+        VM vm = new VM();
+        WeakReference<Object> operand = failWithAStringOnTheStack(vm);
+        assertTrue(collected(operand));
+    }
+
+    /**
+     * Runs a chunk that fails with its string constant on the stack, and drops the chunk.
+     * @return The string constant
+     */
+    private static WeakReference<Object> failWithAStringOnTheStack(VM vm) {
+        Chunk chunk = compile("\"left on the stack\" * 2");
+        RuntimeError error = assertThrows(RuntimeError.class, () -> vm.run(chunk));
+        assertEquals(Operators.NUMBER_OPERANDS, error.getMessage());
+        return new WeakReference<>(chunk.constants[0]);
+    }
+}